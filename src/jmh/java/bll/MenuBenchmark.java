@@ -0,0 +1,79 @@
+package bll;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the menu: lookup of an item by name and price and ingredient list of a nested composite.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MenuBenchmark {
+
+    /**
+     * Number of base items of the menu.
+     */
+    @Param({"10", "100", "1000"})
+    public int menuSize;
+    /**
+     * Levels of nesting of the composite, each level made of four items of the level below.
+     */
+    @Param({"1", "3"})
+    public int depth;
+
+    private Restaurant restaurant;
+    private String[] names;
+    private CompositeMenuItem composite;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        restaurant = new Restaurant();
+        names = new String[menuSize];
+        List<MenuItem> level = new ArrayList<>();
+        for (int i = 0; i < menuSize; i++) {
+            names[i] = "Item " + i;
+            BaseMenuItem item = new BaseMenuItem(names[i], 100 + i);
+            restaurant.createNewMenuItem(item);
+            level.add(item);
+        }
+        for (int d = 1; d <= depth; d++) {
+            List<MenuItem> next = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                List<MenuItem> items = new ArrayList<>();
+                for (int k = 0; k < 4; k++)
+                    items.add(level.get((i * 4 + k) % level.size()));
+                CompositeMenuItem item = new CompositeMenuItem("Menu " + d + "." + i, items);
+                restaurant.createNewMenuItem(item);
+                next.add(item);
+            }
+            level = next;
+        }
+        composite = (CompositeMenuItem) level.get(0);
+    }
+
+    @Benchmark
+    public MenuItem getMenuItemByName() {
+        int i = cursor++;
+        if (cursor == names.length)
+            cursor = 0;
+        return restaurant.getMenuItem(names[i]);
+    }
+
+    @Benchmark
+    public long compositeComputePrice() {
+        return composite.computePrice();
+    }
+
+    @Benchmark
+    public String compositeIngredientList() {
+        return composite.getIngredientList();
+    }
+}
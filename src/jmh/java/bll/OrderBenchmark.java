@@ -0,0 +1,69 @@
+package bll;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the reads of orders, at several numbers of orders and of items per order.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderBenchmark {
+
+    @Param({"1000", "100000"})
+    public int orderCount;
+    @Param({"1", "10", "50"})
+    public int itemsPerOrder;
+
+    private Restaurant restaurant;
+    private Order[] orders;
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        restaurant = new Restaurant();
+        List<MenuItem> menu = OrderCreationBenchmark.buildMenu(restaurant, 100);
+        orders = new Order[orderCount];
+        for (int i = 0; i < orderCount; i++) {
+            orders[i] = new Order(i, i, i % 40);
+            restaurant.createNewOrder(orders[i], OrderCreationBenchmark.pickItems(menu, i, itemsPerOrder));
+        }
+    }
+
+    private int next() {
+        int i = cursor++;
+        if (cursor == orderCount)
+            cursor = 0;
+        return i;
+    }
+
+    @Benchmark
+    public Order getOrder() {
+        return restaurant.getOrder(next());
+    }
+
+    @Benchmark
+    public long computeOrderPrice() {
+        return restaurant.computeOrderPrice(orders[next()]);
+    }
+
+    /**
+     * The stream version left commented out in computeOrderPrice, for comparison with the running total.
+     */
+    @Benchmark
+    public long computeOrderPriceStream() {
+        return restaurant.getMenuItemList(orders[next()]).stream().mapToLong(MenuItem::computePrice).sum();
+    }
+
+    @Benchmark
+    public List<Order> getOrders() {
+        return new ArrayList<>(restaurant.getOrders());
+    }
+}
@@ -0,0 +1,73 @@
+package bll;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of order creation. Each invocation adds a batch of orders to a restaurant that already
+ * holds orderCount orders, the restaurant is rebuilt before every iteration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderCreationBenchmark {
+
+    private static final int BATCH = 10_000;
+
+    @Param({"10", "1000"})
+    public int menuSize;
+    @Param({"0", "100000"})
+    public int orderCount;
+    @Param({"1", "10", "50"})
+    public int itemsPerOrder;
+
+    private Restaurant restaurant;
+    private List<MenuItem> menu;
+    private List<List<MenuItem>> batch;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        restaurant = new Restaurant();
+        menu = buildMenu(restaurant, menuSize);
+        for (int i = 0; i < orderCount; i++)
+            restaurant.createNewOrder(new Order(i, i, i % 40), pickItems(menu, i, itemsPerOrder));
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++)
+            batch.add(pickItems(menu, orderCount + i, itemsPerOrder));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Restaurant createNewOrder() {
+        for (int i = 0; i < BATCH; i++) {
+            int id = orderCount + i;
+            restaurant.createNewOrder(new Order(id, id, id % 40), batch.get(i));
+        }
+        return restaurant;
+    }
+
+    static List<MenuItem> buildMenu(Restaurant restaurant, int size) {
+        List<MenuItem> menu = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            MenuItem item = i % 5 == 4
+                    ? new CompositeMenuItem("Menu " + i, menu.subList(i - 4, i - 1))
+                    : new BaseMenuItem("Item " + i, 100 + i);
+            restaurant.createNewMenuItem(item);
+            menu.add(item);
+        }
+        return menu;
+    }
+
+    static List<MenuItem> pickItems(List<MenuItem> menu, int seed, int count) {
+        List<MenuItem> items = new ArrayList<>(count);
+        for (int k = 0; k < count; k++)
+            items.add(menu.get((seed * 31 + k * 7) % menu.size()));
+        return items;
+    }
+}
@@ -0,0 +1,141 @@
+package bll;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory footprint of the lines of orders in the packed OrderLineStore layout and in the layout it replaced,
+ * a map from orders holding a Date to an ArrayList with one MenuItem reference per unit.
+ * The benchmarks build each layout, run them with -prof gc to see the bytes allocated per build.
+ * The retained size of each layout, measured with JOL without the shared menu items, is printed by main.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderFootprintBenchmark {
+
+    @Param({"10000", "100000"})
+    public int orderCount;
+    @Param({"4", "12"})
+    public int unitsPerOrder;
+    @Param({"1", "2"})
+    public int unitsPerLine;
+
+    private List<MenuItem> menu;
+    private Order[] orders;
+    private List<List<MenuItem>> units;
+
+    @Setup
+    public void setUp() {
+        menu = OrderCreationBenchmark.buildMenu(new Restaurant(), 100);
+        orders = new Order[orderCount];
+        units = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            orders[i] = new Order(i, i, i % 40);
+            units.add(pickUnits(menu, i, unitsPerOrder, unitsPerLine));
+        }
+    }
+
+    @Benchmark
+    public OrderLineStore buildPacked() {
+        return packed(units);
+    }
+
+    @Benchmark
+    public Map<LegacyOrder, List<MenuItem>> buildLegacy() {
+        return legacy(orders, units);
+    }
+
+    /**
+     * Print the retained size of both layouts, in bytes per order.
+     */
+    public static void main(String[] args) {
+        // the comparators of the indexes of OrderStore are lambdas, whose fields JOL can only read this way
+        System.setProperty("jol.magicFieldOffset", "true");
+        List<MenuItem> menu = OrderCreationBenchmark.buildMenu(new Restaurant(), 100);
+        GraphLayout menuLayout = GraphLayout.parseInstance(menu.toArray());
+        System.out.printf("%8s %6s %6s %14s %14s %14s%n", "orders", "units", "repeat", "list B/order",
+                "packed B/order", "store B/order");
+        for (int orderCount : new int[]{10_000, 100_000})
+            for (int unitsPerOrder : new int[]{4, 12})
+                for (int unitsPerLine : new int[]{1, 2}) {
+                    Order[] orders = new Order[orderCount];
+                    List<List<MenuItem>> units = new ArrayList<>(orderCount);
+                    OrderStore store = new OrderStore();
+                    for (int i = 0; i < orderCount; i++) {
+                        orders[i] = new Order(i, i, i % 40);
+                        units.add(pickUnits(menu, i, unitsPerOrder, unitsPerLine));
+                        store.add(orders[i], units.get(i));
+                    }
+                    long list = size(legacy(orders, units), menuLayout);
+                    long packed = size(new Object[]{orders, packed(units)}, menuLayout);
+                    long full = size(store, menuLayout);
+                    System.out.printf("%8d %6d %6d %14.1f %14.1f %14.1f%n", orderCount, unitsPerOrder, unitsPerLine,
+                            (double) list / orderCount, (double) packed / orderCount, (double) full / orderCount);
+                }
+    }
+
+    private static long size(Object root, GraphLayout menuLayout) {
+        return GraphLayout.parseInstance(root).subtract(menuLayout).totalSize();
+    }
+
+    private static OrderLineStore packed(List<List<MenuItem>> units) {
+        OrderLineStore store = new OrderLineStore();
+        for (List<MenuItem> items : units)
+            store.allocate(items);
+        return store;
+    }
+
+    private static Map<LegacyOrder, List<MenuItem>> legacy(Order[] orders, List<List<MenuItem>> units) {
+        Map<LegacyOrder, List<MenuItem>> map = new LinkedHashMap<>();
+        for (int i = 0; i < orders.length; i++)
+            map.put(new LegacyOrder(orders[i].getOrderId(), new Date(orders[i].getTime()), orders[i].getTable()),
+                    new ArrayList<>(units.get(i)));
+        return map;
+    }
+
+    /**
+     * Units of an order, each menu item repeated unitsPerLine times.
+     */
+    private static List<MenuItem> pickUnits(List<MenuItem> menu, int seed, int unitsPerOrder, int unitsPerLine) {
+        List<MenuItem> items = new ArrayList<>(unitsPerOrder);
+        for (int k = 0; k < unitsPerOrder; k++)
+            items.add(menu.get((seed * 31 + k / unitsPerLine * 7) % menu.size()));
+        return items;
+    }
+
+    /**
+     * Order as it was before its date became a primitive timestamp.
+     */
+    public static final class LegacyOrder {
+        private final int orderId;
+        private final Date date;
+        private final int table;
+
+        LegacyOrder(int orderId, Date date, int table) {
+            this.orderId = orderId;
+            this.date = date;
+            this.table = table;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof LegacyOrder && ((LegacyOrder) o).orderId == orderId;
+        }
+
+        @Override
+        public int hashCode() {
+            return orderId;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dao;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.MenuItem;
+import bll.Money;
+import bll.Order;
+import bll.OrderLines;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of bill rendering: the compiled default template against the StringBuilder rendering that
+ * FileWriter.makeBill used before templates. Both produce the same bytes; writing the file is left out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BillBenchmark {
+
+    @Param({"3", "30"})
+    public int lines;
+
+    private Order order;
+    private OrderLines orderLines;
+    private BillRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        MenuItem[] items = new MenuItem[lines];
+        int[] quantities = new int[lines];
+        long[] prices = new long[lines];
+        for (int i = 0; i < lines; i++) {
+            BaseMenuItem base = new BaseMenuItem("Item " + i, 100 + i);
+            items[i] = i % 3 == 2 ? new CompositeMenuItem("Menu " + i, Arrays.asList(base, base)) : base;
+            quantities[i] = 1 + i % 2;
+            prices[i] = items[i].computePrice();
+        }
+        order = new Order(42, 1_600_000_000_000L, 7);
+        orderLines = new OrderLines(items, quantities, prices);
+        renderer = BillTemplate.DEFAULT.newRenderer();
+    }
+
+    @Benchmark
+    public ByteBuffer template() {
+        return renderer.render(order, orderLines);
+    }
+
+    @Benchmark
+    public byte[] legacyMakeBill() {
+        StringBuilder bill = new StringBuilder();
+        bill.append("BILL\n");
+        bill.append("Order ID: ").append(order.getOrderId());
+        bill.append("\nDate: ").append(order.getDate());
+        bill.append("\nTable number: ").append(order.getTable());
+        for (int i = 0, n = orderLines.size(); i < n; i++)
+            for (int unit = 0; unit < orderLines.getQuantity(i); unit++)
+                Money.appendTo(bill.append("\n").append(orderLines.getMenuItem(i).getName()).append(" "), orderLines.getPrice(i));
+        Money.appendTo(bill.append("\nTotal cost: "), orderLines.getTotal());
+        return String.valueOf(bill).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,90 @@
+package dao;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.MenuItem;
+import bll.Order;
+import bll.Restaurant;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of loading a restaurant at startup: the binary snapshot file against the Java serialization
+ * of Restaurant.ser, for the same restaurant. The files are written once per trial to a temporary directory.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int orderCount;
+
+    private Path directory;
+    private String snapshotFile;
+    private String serializedFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Restaurant restaurant = new Restaurant();
+        List<MenuItem> menu = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            MenuItem item = i % 5 == 4
+                    ? new CompositeMenuItem("Menu " + i, menu.subList(i - 4, i - 1))
+                    : new BaseMenuItem("Item " + i, 100 + i);
+            restaurant.createNewMenuItem(item);
+            menu.add(item);
+        }
+        for (int i = 0; i < orderCount; i++) {
+            List<MenuItem> items = new ArrayList<>();
+            for (int k = 0; k < 5; k++)
+                items.add(menu.get((i * 31 + k * 7) % menu.size()));
+            restaurant.createNewOrder(new Order(i, 1_600_000_000_000L + i * 1000L, i % 40), items);
+        }
+
+        directory = Files.createTempDirectory("startup");
+        snapshotFile = directory.resolve("Restaurant.snap").toString();
+        serializedFile = directory.resolve("Restaurant.ser").toString();
+        SnapshotFile.write(restaurant.snapshot(), snapshotFile);
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Path.of(serializedFile))))) {
+            out.writeObject(restaurant);
+        }
+        System.out.println("\nsnapshot " + Files.size(Path.of(snapshotFile)) + " bytes, serialized "
+                + Files.size(Path.of(serializedFile)) + " bytes");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(snapshotFile));
+        Files.deleteIfExists(Path.of(serializedFile));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public Restaurant readSnapshot() throws IOException {
+        return SnapshotFile.read(snapshotFile, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public Restaurant readSerialized() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                Files.newInputStream(Path.of(serializedFile))))) {
+            return (Restaurant) in.readObject();
+        }
+    }
+}
@@ -2,12 +2,12 @@ package bll;
 
 public class BaseMenuItem extends MenuItem {
 
-    public BaseMenuItem(String name, double price) {
+    public BaseMenuItem(String name, long price) {
         super(name, price);
     }
 
     @Override
-    public double computePrice() {
+    public long computePrice() {
         return price;
     }
 
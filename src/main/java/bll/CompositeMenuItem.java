@@ -1,22 +1,48 @@
 package bll;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
 
+/**
+ * CompositeMenuItem class is a menu item made of other menu items.
+ * The tree of items is compiled once into a flat form: the distinct leaf items, how many times each
+ * of them appears and the ingredient list. Pricing and rendering the ingredients are then a single
+ * pass over arrays, and the compiled form is rebuilt only when one of the items changes.
+ */
 public class CompositeMenuItem extends MenuItem{
 
-    private final List<MenuItem> items;
+    /**
+     * Items of the composite. The list is never modified once published, edits replace it with a copy,
+     * so a list read once stays consistent; the lists of a tree read at different moments may not be.
+     */
+    private volatile List<MenuItem> items;
+
+    /**
+     * Compiled flat form, replaced as a whole so readers always see a consistent one.
+     */
+    private volatile Compiled compiled;
 
     public CompositeMenuItem(String name, List<MenuItem> items) {
         super(name, 0);
-        this.items = items;
-        setPrice(computePrice());
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        compile();
     }
 
     @Override
-    public double computePrice() {
-        double buf = 0;
-        for(MenuItem m : items)
-            buf += m.getPrice();
+    public long computePrice() {
+        // read the compiled form once, a recompile between two reads would mix two forms
+        Compiled current = compiled;
+        MenuItem[] leaves = current.leaves;
+        int[] multiplicities = current.multiplicities;
+        long buf = 0;
+        for(int i = 0; i < leaves.length; i++)
+            buf += leaves[i].getPrice() * multiplicities[i];
         return buf;
 
         //return items.stream().mapToDouble(baseMenuItem -> computePrice()).sum();
@@ -24,9 +50,104 @@ public class CompositeMenuItem extends MenuItem{
 
     @Override
     public String getIngredientList() {
+        return compiled.ingredientList;
+    }
+
+    /**
+     * Get the items this composite is made of.
+     * @return read only list of menu items
+     */
+    public List<MenuItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Visit the distinct base items of the tree with the number of times each one appears in it.
+     * @param action action called with each leaf and its multiplicity
+     */
+    public void forEachLeaf(ObjIntConsumer<MenuItem> action) {
+        Compiled current = compiled;
+        for (int i = 0; i < current.leaves.length; i++)
+            action.accept(current.leaves[i], current.multiplicities[i]);
+    }
+
+    /**
+     * Replace every occurrence of an item with another one. The composite must be compiled afterwards.
+     * @param oldItem item to be replaced
+     * @param newItem replacement item
+     */
+    void replaceItem(MenuItem oldItem, MenuItem newItem) {
+        List<MenuItem> newItems = new ArrayList<>(items);
+        for (int i = 0; i < newItems.size(); i++)
+            if (newItems.get(i) == oldItem)
+                newItems.set(i, newItem);
+        items = Collections.unmodifiableList(newItems);
+    }
+
+    /**
+     * Rebuild the flat form and the price from the items.
+     * Nested composites must already be compiled, their flat forms are merged into this one.
+     */
+    void compile() {
+        Map<MenuItem, Integer> positions = new IdentityHashMap<>();
+        MenuItem[] newLeaves = new MenuItem[items.size()];
+        int[] newMultiplicities = new int[items.size()];
+        int count = 0;
         StringBuilder ingredients = new StringBuilder();
-        for(MenuItem m : items)
+        for (MenuItem m : items) {
             ingredients.append(m.getIngredientList()).append(", ");
-        return String.valueOf(ingredients);
+            MenuItem[] childLeaves;
+            int[] childMultiplicities;
+            if (m instanceof CompositeMenuItem) {
+                Compiled child = ((CompositeMenuItem) m).compiled;
+                childLeaves = child.leaves;
+                childMultiplicities = child.multiplicities;
+            } else {
+                childLeaves = new MenuItem[] {m};
+                childMultiplicities = new int[] {1};
+            }
+            for (int i = 0; i < childLeaves.length; i++) {
+                Integer position = positions.get(childLeaves[i]);
+                if (position == null) {
+                    if (count == newLeaves.length) {
+                        newLeaves = Arrays.copyOf(newLeaves, count * 2);
+                        newMultiplicities = Arrays.copyOf(newMultiplicities, count * 2);
+                    }
+                    positions.put(childLeaves[i], count);
+                    newLeaves[count] = childLeaves[i];
+                    newMultiplicities[count] = childMultiplicities[i];
+                    count++;
+                } else
+                    newMultiplicities[position] += childMultiplicities[i];
+            }
+        }
+        this.compiled = new Compiled(Arrays.copyOf(newLeaves, count), Arrays.copyOf(newMultiplicities, count),
+                String.valueOf(ingredients));
+        setPrice(computePrice());
+    }
+
+    /**
+     * Flat form of a composite.
+     */
+    private static final class Compiled implements Serializable {
+
+        /**
+         * Distinct leaf items of the tree.
+         */
+        private final MenuItem[] leaves;
+        /**
+         * Number of times each leaf appears in the tree.
+         */
+        private final int[] multiplicities;
+        /**
+         * Cached ingredient list.
+         */
+        private final String ingredientList;
+
+        private Compiled(MenuItem[] leaves, int[] multiplicities, String ingredientList) {
+            this.leaves = leaves;
+            this.multiplicities = multiplicities;
+            this.ingredientList = ingredientList;
+        }
     }
 }
@@ -0,0 +1,205 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * EventBus class delivers the events of a restaurant to its listeners asynchronously.
+ * Publishing puts the event in a bounded lock-free queue and returns, so the publisher never waits
+ * for the listeners, however many or slow they are. A dispatcher thread, started with the first
+ * listener, waits a short coalescing window after the first event of a burst and delivers everything
+ * queued by then to each listener in one call. When the queue is full new events are dropped and counted.
+ */
+public class EventBus {
+
+    /**
+     * Default capacity of the queue.
+     */
+    public static final int DEFAULT_CAPACITY = 16384;
+    /**
+     * Default coalescing window in milliseconds.
+     */
+    public static final long DEFAULT_COALESCE_MILLIS = 50;
+
+    private final EventQueue queue;
+    private final long coalesceNanos;
+    private final List<RestaurantListener> listeners;
+    private final AtomicLong dropped;
+    private final AtomicBoolean sleeping;
+    private volatile Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * EventBus constructor with the default capacity and coalescing window.
+     */
+    public EventBus() {
+        this(DEFAULT_CAPACITY, DEFAULT_COALESCE_MILLIS);
+    }
+
+    /**
+     * EventBus constructor.
+     * @pre capacity > 0, coalesceMillis >= 0
+     * @param capacity maximum number of queued events, rounded up to a power of two
+     * @param coalesceMillis time to wait after the first event of a burst before delivering it
+     */
+    public EventBus(int capacity, long coalesceMillis) {
+        assert (capacity > 0) && (coalesceMillis >= 0);
+        this.queue = new EventQueue(capacity);
+        this.coalesceNanos = TimeUnit.MILLISECONDS.toNanos(coalesceMillis);
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.dropped = new AtomicLong();
+        this.sleeping = new AtomicBoolean();
+    }
+
+    /**
+     * Add a listener of all following events.
+     * @pre listener != null
+     * @param listener listener
+     */
+    public synchronized void subscribe(RestaurantListener listener) {
+        assert listener != null;
+        listeners.add(listener);
+        if (dispatcher == null && !closed) {
+            Thread thread = new Thread(this::dispatchLoop, "event-dispatcher");
+            thread.setDaemon(true);
+            dispatcher = thread;
+            thread.start();
+        }
+    }
+
+    public void unsubscribe(RestaurantListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queue an event for the listeners. Never blocks.
+     * @pre event != null
+     * @param event event
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean publish(RestaurantEvent event) {
+        assert event != null;
+        if (listeners.isEmpty())
+            return true;
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (sleeping.get() && sleeping.compareAndSet(true, false))
+            LockSupport.unpark(dispatcher);
+        return true;
+    }
+
+    /**
+     * Get the number of events dropped because the queue was full.
+     * @return number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Stop the dispatcher thread. Events still queued are not delivered.
+     */
+    public void close() {
+        closed = true;
+        Thread thread = dispatcher;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    private void dispatchLoop() {
+        List<RestaurantEvent> batch = new ArrayList<>();
+        while (!closed) {
+            if (queue.isEmpty()) {
+                sleeping.set(true);
+                if (queue.isEmpty() && !closed)
+                    LockSupport.park(this);
+                sleeping.set(false);
+                continue;
+            }
+            if (coalesceNanos > 0)
+                LockSupport.parkNanos(this, coalesceNanos);
+            for (RestaurantEvent event = queue.poll(); event != null; event = queue.poll())
+                batch.add(event);
+            List<RestaurantEvent> events = Collections.unmodifiableList(new ArrayList<>(batch));
+            batch.clear();
+            for (RestaurantListener listener : listeners) {
+                try {
+                    listener.onEvents(events);
+                } catch (RuntimeException e) {
+                    System.out.println(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Bounded queue for many producers and one consumer. Each cell has a sequence number that tells
+     * whether it is free for the producer of a given position or full for the consumer, so producers
+     * only compete with a compare and set on the tail.
+     */
+    private static final class EventQueue {
+
+        private final AtomicReferenceArray<RestaurantEvent> cells;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail;
+        private long head;
+
+        EventQueue(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+            this.cells = new AtomicReferenceArray<>(size);
+            this.sequences = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++)
+                sequences.set(i, i);
+            this.mask = size - 1;
+            this.tail = new AtomicLong();
+        }
+
+        boolean offer(RestaurantEvent event) {
+            long position = tail.get();
+            while (true) {
+                int cell = (int) position & mask;
+                long difference = sequences.get(cell) - position;
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        cells.set(cell, event);
+                        sequences.set(cell, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0)
+                    return false;
+                else
+                    position = tail.get();
+            }
+        }
+
+        /**
+         * Take the oldest event. Only the dispatcher thread may call this.
+         */
+        RestaurantEvent poll() {
+            int cell = (int) head & mask;
+            if (sequences.get(cell) != head + 1)
+                return null;
+            RestaurantEvent event = cells.get(cell);
+            cells.set(cell, null);
+            sequences.set(cell, head + mask + 1);
+            head++;
+            return event;
+        }
+
+        boolean isEmpty() {
+            return sequences.get((int) head & mask) != head + 1;
+        }
+    }
+}
@@ -45,14 +45,15 @@ public interface IRestaurantProcessing {
      * @pre order != null
      * @post @result == @forall k:[0..menuItemList.size()] @menuItem.computePrice() @sum
      * @param order order that needs to have its cost computed
-     * @return double cost of order
+     * @return long cost of order in minor units
      */
-    double computeOrderPrice(Order order);
+    long computeOrderPrice(Order order);
 
     /**
      * Generates a bill in a new text file for an order.
      * @pre order != null
      * @param order order to have bill generated
+     * @throws java.io.UncheckedIOException if the bill can not be stored
      */
     void generateBill(Order order, int id);
 
@@ -0,0 +1,281 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Kitchen class schedules the preparation of the orders of a restaurant across the kitchen stations.
+ * While started, the kitchen is attached to the restaurant, which submits every new order directly from
+ * createNewOrder, so no order is lost however many arrive at once. Each new order is split into tickets, one per unit of each base menu item, composite items being
+ * expanded into their components. Every ticket goes to the queue of its station, where the cooks of the
+ * station, one thread each, take the ticket with the earliest virtual arrival time (see KitchenTicket).
+ * The time tickets wait in the queue and the time until they are done are kept in histograms. Times are read
+ * from the clock of the kitchen, System.nanoTime() unless a simulation gives its own.
+ */
+public class Kitchen {
+
+    private final Restaurant restaurant;
+    private final Map<String, Station> stations;
+    private final Station defaultStation;
+    private final Function<MenuItem, String> stationOf;
+    private final ToIntFunction<MenuItem> priorityOf;
+    private final long agingNanos;
+    private final Consumer<KitchenTicket> prepare;
+    private final LongSupplier clock;
+
+    private final AtomicLong sequence;
+    private final AtomicLong completed;
+    private final Histogram waitTimes;
+    private final Histogram latencies;
+    private volatile boolean running;
+    private long startNanos;
+
+    /**
+     * Kitchen constructor.
+     * @pre restaurant != null, cooksPerStation is not empty and has positive values, agingMillis > 0
+     * @param restaurant restaurant whose new orders are prepared
+     * @param cooksPerStation number of cooks of each station; the first station takes the items of unknown stations
+     * @param stationOf station preparing a base menu item
+     * @param priorityOf priority of a base menu item, higher is prepared sooner
+     * @param agingMillis waiting time that is worth one level of priority
+     * @param prepare work of a cook on a ticket, called on the thread of the cook
+     */
+    public Kitchen(Restaurant restaurant, Map<String, Integer> cooksPerStation, Function<MenuItem, String> stationOf,
+                   ToIntFunction<MenuItem> priorityOf, long agingMillis, Consumer<KitchenTicket> prepare) {
+        this(restaurant, cooksPerStation, stationOf, priorityOf, agingMillis, prepare, System::nanoTime);
+    }
+
+    /**
+     * Kitchen constructor with its own clock, so a simulation can run in virtual time.
+     * @pre restaurant != null, cooksPerStation is not empty and has positive values, agingMillis > 0, clock != null
+     * @param restaurant restaurant whose new orders are prepared
+     * @param cooksPerStation number of cooks of each station; the first station takes the items of unknown stations
+     * @param stationOf station preparing a base menu item
+     * @param priorityOf priority of a base menu item, higher is prepared sooner
+     * @param agingMillis waiting time that is worth one level of priority
+     * @param prepare work of a cook on a ticket, called on the thread of the cook
+     * @param clock time in nanoseconds, never going back
+     */
+    public Kitchen(Restaurant restaurant, Map<String, Integer> cooksPerStation, Function<MenuItem, String> stationOf,
+                   ToIntFunction<MenuItem> priorityOf, long agingMillis, Consumer<KitchenTicket> prepare,
+                   LongSupplier clock) {
+        assert (restaurant != null) && !cooksPerStation.isEmpty() && (agingMillis > 0) && (clock != null);
+        this.restaurant = restaurant;
+        this.stations = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : cooksPerStation.entrySet()) {
+            assert entry.getValue() > 0;
+            stations.put(entry.getKey(), new Station(entry.getKey(), entry.getValue()));
+        }
+        this.defaultStation = stations.values().iterator().next();
+        this.stationOf = stationOf;
+        this.priorityOf = priorityOf;
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        this.prepare = prepare;
+        this.clock = clock;
+        this.sequence = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.waitTimes = new Histogram();
+        this.latencies = new Histogram();
+    }
+
+    /**
+     * Start the cooks and attach the kitchen to the restaurant, which then submits its new orders.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        startNanos = clock.getAsLong();
+        for (Station station : stations.values())
+            station.start();
+        restaurant.setKitchen(this);
+    }
+
+    /**
+     * Stop taking orders and stop the cooks once they finish their current ticket.
+     * Tickets still queued are dropped.
+     */
+    public synchronized void stop() {
+        if (!running)
+            return;
+        running = false;
+        restaurant.setKitchen(null);
+        for (Station station : stations.values())
+            station.stop();
+    }
+
+    /**
+     * Split an order into tickets and queue them at their stations.
+     * @pre order != null, orderLines != null
+     * @param order order
+     * @param orderLines lines of the order
+     */
+    public void submit(Order order, OrderLines orderLines) {
+        assert (order != null) && (orderLines != null);
+        long now = clock.getAsLong();
+        for (int i = 0; i < orderLines.size(); i++) {
+            MenuItem menuItem = orderLines.getMenuItem(i);
+            int quantity = orderLines.getQuantity(i);
+            if (menuItem instanceof CompositeMenuItem)
+                ((CompositeMenuItem) menuItem).forEachLeaf((leaf, multiplicity) -> queue(order, leaf, quantity * multiplicity, now));
+            else
+                queue(order, menuItem, quantity, now);
+        }
+    }
+
+    private void queue(Order order, MenuItem menuItem, int units, long now) {
+        Station station = stations.get(stationOf.apply(menuItem));
+        if (station == null)
+            station = defaultStation;
+        int priority = priorityOf.applyAsInt(menuItem);
+        for (int unit = 0; unit < units; unit++)
+            station.add(new KitchenTicket(order, menuItem, station.name, priority, now, agingNanos,
+                    sequence.getAndIncrement()));
+    }
+
+    // METRICS =========================================================================================================
+
+    /**
+     * Get the histogram of the time tickets wait in their queue, in nanoseconds.
+     * @return histogram
+     */
+    public Histogram getWaitTimes() {
+        return waitTimes;
+    }
+
+    /**
+     * Get the histogram of the time from queuing a ticket until it is prepared, in nanoseconds.
+     * @return histogram
+     */
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Get the number of tickets prepared per second since the kitchen was started.
+     * @return throughput
+     */
+    public double getThroughput() {
+        long elapsed = clock.getAsLong() - startNanos;
+        return elapsed <= 0 ? 0 : completed.get() * 1e9 / elapsed;
+    }
+
+    /**
+     * Get the number of tickets waiting at each station.
+     * @return map from station name to queue length
+     */
+    public Map<String, Integer> getQueueLengths() {
+        Map<String, Integer> lengths = new LinkedHashMap<>();
+        for (Station station : stations.values())
+            lengths.put(station.name, station.size());
+        return Collections.unmodifiableMap(lengths);
+    }
+
+    /**
+     * Station with its queue of tickets and its cooks.
+     */
+    private final class Station {
+
+        private final String name;
+        private final int cookCount;
+        private final PriorityQueue<KitchenTicket> queue;
+        private final ReentrantLock lock;
+        private final Condition notEmpty;
+        private final List<Thread> cooks;
+
+        Station(String name, int cookCount) {
+            this.name = name;
+            this.cookCount = cookCount;
+            this.queue = new PriorityQueue<>();
+            this.lock = new ReentrantLock();
+            this.notEmpty = lock.newCondition();
+            this.cooks = new ArrayList<>();
+        }
+
+        void start() {
+            for (int i = 0; i < cookCount; i++) {
+                Thread cook = new Thread(this::cook, "cook-" + name + "-" + i);
+                cook.setDaemon(true);
+                cooks.add(cook);
+                cook.start();
+            }
+        }
+
+        void stop() {
+            lock.lock();
+            try {
+                queue.clear();
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (Thread cook : cooks)
+                try {
+                    cook.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            cooks.clear();
+        }
+
+        void add(KitchenTicket ticket) {
+            lock.lock();
+            try {
+                queue.add(ticket);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void cook() {
+            while (true) {
+                KitchenTicket ticket;
+                lock.lock();
+                try {
+                    while (queue.isEmpty() && running)
+                        notEmpty.awaitUninterruptibly();
+                    if (!running)
+                        return;
+                    ticket = queue.poll();
+                } finally {
+                    lock.unlock();
+                }
+                waitTimes.record(clock.getAsLong() - ticket.getEnqueuedNanos());
+                try {
+                    prepare.accept(ticket);
+                } catch (RuntimeException e) {
+                    System.out.println(e.getMessage());
+                }
+                latencies.record(clock.getAsLong() - ticket.getEnqueuedNanos());
+                completed.incrementAndGet();
+            }
+        }
+    }
+}
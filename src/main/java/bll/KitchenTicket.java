@@ -0,0 +1,59 @@
+package bll;
+
+/**
+ * KitchenTicket class is one unit of a base menu item of an order, to be prepared at one station.
+ * Tickets are ordered by a virtual arrival time: a ticket of priority p counts as if it had arrived
+ * p aging intervals earlier. A low priority ticket therefore overtakes new high priority tickets
+ * once it has waited long enough, so it can not starve.
+ */
+public class KitchenTicket implements Comparable<KitchenTicket> {
+
+    private final Order order;
+    private final MenuItem menuItem;
+    private final String station;
+    private final int priority;
+    private final long enqueuedNanos;
+    private final long key;
+    private final long sequence;
+
+    KitchenTicket(Order order, MenuItem menuItem, String station, int priority, long enqueuedNanos,
+                  long agingNanos, long sequence) {
+        this.order = order;
+        this.menuItem = menuItem;
+        this.station = station;
+        this.priority = priority;
+        this.enqueuedNanos = enqueuedNanos;
+        this.key = enqueuedNanos - priority * agingNanos;
+        this.sequence = sequence;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public MenuItem getMenuItem() {
+        return menuItem;
+    }
+
+    public String getStation() {
+        return station;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Get the moment the ticket was queued.
+     * @return time of the clock of the kitchen when queued, in nanoseconds
+     */
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    @Override
+    public int compareTo(KitchenTicket other) {
+        int byKey = Long.compare(key, other.key);
+        return byKey != 0 ? byKey : Long.compare(sequence, other.sequence);
+    }
+}
@@ -0,0 +1,46 @@
+package bll;
+
+/**
+ * MenuChangedEvent class announces that a menu item was created, edited or deleted.
+ * It carries the position of the item in the menu, so a view can update the affected row only.
+ */
+public class MenuChangedEvent extends RestaurantEvent {
+
+    public static final int CREATED = 0;
+    public static final int EDITED = 1;
+    public static final int DELETED = 2;
+
+    private final MenuItem menuItem;
+    private final int change;
+    private final int index;
+
+    public MenuChangedEvent(MenuItem menuItem, int change, int index) {
+        this.menuItem = menuItem;
+        this.change = change;
+        this.index = index;
+    }
+
+    /**
+     * Get the menu item that was created, edited or deleted.
+     * @return menu item, for an edit the new one
+     */
+    public MenuItem getMenuItem() {
+        return menuItem;
+    }
+
+    /**
+     * Get the kind of change.
+     * @return CREATED, EDITED or DELETED
+     */
+    public int getChange() {
+        return change;
+    }
+
+    /**
+     * Get the position of the item in the menu when it was changed.
+     * @return index of the item
+     */
+    public int getIndex() {
+        return index;
+    }
+}
@@ -0,0 +1,107 @@
+package bll;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * MenuDependencyGraph class keeps, for every menu item, the composite items that contain it.
+ * When an item is replaced only the composites that depend on it, directly or through other
+ * composites, are updated, recompiled and repriced, children before parents.
+ */
+public class MenuDependencyGraph implements Serializable {
+
+    /**
+     * Map from a menu item to the composite items that contain it, compared by identity.
+     */
+    private final Map<MenuItem, Set<CompositeMenuItem>> parents;
+
+    /**
+     * MenuDependencyGraph constructor to initialize collections.
+     */
+    public MenuDependencyGraph() {
+        this.parents = new IdentityHashMap<>();
+    }
+
+    /**
+     * Add the edges from the items of a composite to the composite.
+     * Base items have no outgoing edges and are ignored.
+     * @param menuItem menu item added to the menu
+     */
+    public void register(MenuItem menuItem) {
+        if (!(menuItem instanceof CompositeMenuItem))
+            return;
+        CompositeMenuItem composite = (CompositeMenuItem) menuItem;
+        for (MenuItem m : composite.getItems())
+            parents.computeIfAbsent(m, k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(composite);
+    }
+
+    /**
+     * Remove the edges from the items of a composite to the composite.
+     * @param menuItem menu item removed from the menu
+     */
+    public void unregister(MenuItem menuItem) {
+        if (!(menuItem instanceof CompositeMenuItem))
+            return;
+        CompositeMenuItem composite = (CompositeMenuItem) menuItem;
+        for (MenuItem m : composite.getItems()) {
+            Set<CompositeMenuItem> set = parents.get(m);
+            if (set == null)
+                continue;
+            set.remove(composite);
+            if (set.isEmpty())
+                parents.remove(m);
+        }
+    }
+
+    /**
+     * Replace an item with a new one in every composite that contains it and recompile
+     * the affected composites in topological order.
+     * The cost is proportional to the number of affected composites and their items.
+     * @pre oldItem != null, newItem != null
+     * @param oldItem item being replaced
+     * @param newItem new version of the item
+     * @return affected composites, children before parents
+     */
+    public List<CompositeMenuItem> replace(MenuItem oldItem, MenuItem newItem) {
+        assert (oldItem != null) && (newItem != null);
+        unregister(oldItem);
+        register(newItem);
+        Set<CompositeMenuItem> direct = parents.remove(oldItem);
+        if (direct != null) {
+            for (CompositeMenuItem composite : direct)
+                composite.replaceItem(oldItem, newItem);
+            parents.computeIfAbsent(newItem, k -> Collections.newSetFromMap(new IdentityHashMap<>())).addAll(direct);
+        }
+        List<CompositeMenuItem> affected = affectedBy(newItem);
+        for (CompositeMenuItem composite : affected)
+            composite.compile();
+        return affected;
+    }
+
+    /**
+     * Get all composites that depend on an item, children before parents.
+     * @param menuItem changed item
+     * @return list of composites in topological order
+     */
+    public List<CompositeMenuItem> affectedBy(MenuItem menuItem) {
+        List<CompositeMenuItem> order = new ArrayList<>();
+        Set<MenuItem> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        visit(menuItem, visited, order);
+        Collections.reverse(order);
+        return order;
+    }
+
+    /**
+     * Depth first walk over the parent edges that adds each composite after all its parents.
+     */
+    private void visit(MenuItem menuItem, Set<MenuItem> visited, List<CompositeMenuItem> order) {
+        Set<CompositeMenuItem> set = parents.get(menuItem);
+        if (set == null)
+            return;
+        for (CompositeMenuItem parent : set)
+            if (visited.add(parent)) {
+                visit(parent, visited, order);
+                order.add(parent);
+            }
+    }
+}
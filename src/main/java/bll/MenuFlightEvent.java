@@ -0,0 +1,51 @@
+package bll;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * MenuFlightEvent class is the Flight Recorder event of a change to the menu.
+ * Its duration covers the whole call, including the wait for the menu lock and for the command log.
+ */
+@Name("restaurant.Menu")
+@Label("Menu Edit")
+@Category({"Restaurant", "Menu"})
+@Description("Menu item created, edited or deleted")
+@StackTrace(false)
+public class MenuFlightEvent extends Event {
+
+    public static final String CREATED = "created";
+    public static final String EDITED = "edited";
+    public static final String DELETED = "deleted";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Item")
+    String item;
+
+    @Label("Index")
+    @Description("Position of the item in the menu")
+    int index;
+
+    @Label("Composite")
+    boolean composite;
+
+    /**
+     * Fill in the menu item and commit the event.
+     * @param operation one of CREATED, EDITED and DELETED
+     * @param menuItem item created, the new item when edited or the removed item
+     * @param index position of the item in the menu
+     */
+    void commit(String operation, MenuItem menuItem, int index) {
+        this.operation = operation;
+        this.item = menuItem.getName();
+        this.index = index;
+        this.composite = menuItem instanceof CompositeMenuItem;
+        commit();
+    }
+}
@@ -0,0 +1,100 @@
+package bll;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * MenuIndex class indexes menu items by their name.
+ * Gives constant time lookup by exact name and case insensitive prefix search for autocompletion.
+ * Items sharing a name are kept in the order they were indexed, the last one wins an exact lookup.
+ */
+public class MenuIndex implements Serializable {
+
+    /**
+     * Map from the exact name of an item to the items with that name.
+     */
+    private final Map<String, List<MenuItem>> byName;
+    /**
+     * Sorted map from the lower case name of an item to the items with that name, used for prefix search.
+     */
+    private final NavigableMap<String, List<MenuItem>> byLowerName;
+
+    /**
+     * MenuIndex constructor to initialize collections.
+     */
+    public MenuIndex() {
+        this.byName = new HashMap<>();
+        this.byLowerName = new TreeMap<>();
+    }
+
+    /**
+     * Add a menu item to the index.
+     * @pre menuItem != null
+     * @param menuItem menu item to be indexed
+     */
+    public void add(MenuItem menuItem) {
+        assert menuItem != null;
+        byName.computeIfAbsent(menuItem.getName(), k -> new ArrayList<>(1)).add(menuItem);
+        byLowerName.computeIfAbsent(toKey(menuItem.getName()), k -> new ArrayList<>(1)).add(menuItem);
+    }
+
+    /**
+     * Remove a menu item from the index.
+     * @param menuItem menu item to be removed
+     */
+    public void remove(MenuItem menuItem) {
+        if (menuItem == null)
+            return;
+        removeFrom(byName, menuItem.getName(), menuItem);
+        removeFrom(byLowerName, toKey(menuItem.getName()), menuItem);
+    }
+
+    /**
+     * Get a menu item by its exact name.
+     * @param name name of the menu item
+     * @return menu item or null if there is no item with this name
+     */
+    public MenuItem get(String name) {
+        List<MenuItem> items = byName.get(name);
+        if (items == null)
+            return null;
+        return items.get(items.size() - 1);
+    }
+
+    /**
+     * Find the menu items whose name starts with a prefix, ignoring case, in alphabetical order.
+     * @pre prefix != null, limit >= 0
+     * @param prefix start of the name
+     * @param limit maximum number of items returned
+     * @return list of menu items
+     */
+    public List<MenuItem> findByPrefix(String prefix, int limit) {
+        assert (prefix != null) && (limit >= 0);
+        String from = toKey(prefix);
+        List<MenuItem> result = new ArrayList<>();
+        for (List<MenuItem> items : byLowerName.subMap(from, true, from + Character.MAX_VALUE, false).values())
+            for (MenuItem m : items) {
+                if (result.size() >= limit)
+                    return result;
+                result.add(m);
+            }
+        return result;
+    }
+
+    private static String toKey(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    private static void removeFrom(Map<String, List<MenuItem>> map, String key, MenuItem menuItem) {
+        List<MenuItem> items = map.get(key);
+        if (items == null)
+            return;
+        for (int i = items.size() - 1; i >= 0; i--)
+            if (items.get(i) == menuItem) {
+                items.remove(i);
+                break;
+            }
+        if (items.isEmpty())
+            map.remove(key);
+    }
+}
@@ -5,18 +5,21 @@ import java.io.Serializable;
 public abstract class MenuItem implements Serializable {
 
     protected String name;
-    protected double price;
+    /**
+     * Price in minor units, see Money.
+     */
+    protected volatile long price;
 
-    public MenuItem(String name, double price) {
+    public MenuItem(String name, long price) {
         this.name = name;
         this.price = price;
     }
 
-    public abstract double computePrice();
+    public abstract long computePrice();
 
     public abstract String getIngredientList();
 
-    public void setPrice(double price) {
+    public void setPrice(long price) {
         this.price = price;
     }
 
@@ -24,7 +27,7 @@ public abstract class MenuItem implements Serializable {
         return this.name;
     }
 
-    public double getPrice(){
+    public long getPrice(){
         return this.price;
     }
 
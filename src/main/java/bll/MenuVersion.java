@@ -0,0 +1,98 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MenuVersion class is an immutable version of the menu: the menu items in menu order, their prices
+ * and their index by name. The restaurant builds a version at the end of each edit of the menu and
+ * publishes it through one volatile reference, so a reader holding a version sees a consistent menu without
+ * taking a lock, however the menu is edited meanwhile. Versions are numbered from 0 for the life of the
+ * restaurant object.
+ * The menu items themselves are shared between versions, and editing an item reprices the composite items
+ * containing it in place, so the prices of this version are read with getPrice, not from the items.
+ */
+public final class MenuVersion {
+
+    private final long version;
+    private final List<MenuItem> items;
+    private final long[] prices;
+    private final MenuIndex index;
+
+    /**
+     * MenuVersion constructor, copying the items with their current prices and indexing them by name.
+     * @pre items != null, the menu can not be edited meanwhile
+     * @param version number of the version
+     * @param items menu items in menu order
+     */
+    MenuVersion(long version, List<MenuItem> items) {
+        assert items != null;
+        this.version = version;
+        this.items = Collections.unmodifiableList(new ArrayList<>(items));
+        this.prices = new long[this.items.size()];
+        this.index = new MenuIndex();
+        for (int i = 0; i < prices.length; i++) {
+            MenuItem m = this.items.get(i);
+            prices[i] = m.getPrice();
+            index.add(m);
+        }
+    }
+
+    /**
+     * Get the number of the version, higher for later versions.
+     * @return version number
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the menu items in menu order.
+     * @return read only list of menu items
+     */
+    public List<MenuItem> getItems() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Get a menu item by its position in the menu.
+     * @param position position of the item
+     * @return menu item
+     */
+    public MenuItem get(int position) {
+        return items.get(position);
+    }
+
+    /**
+     * Get the price of a menu item in this version.
+     * @param position position of the item
+     * @return price in minor units
+     */
+    public long getPrice(int position) {
+        return prices[position];
+    }
+
+    /**
+     * Get a menu item by its exact name.
+     * @param name name of the menu item
+     * @return menu item or null if there is no item with this name
+     */
+    public MenuItem get(String name) {
+        return index.get(name);
+    }
+
+    /**
+     * Find menu items whose name starts with the given text, ignoring case.
+     * @param prefix start of the name
+     * @param limit maximum number of items returned
+     * @return list of menu items sorted by name
+     */
+    public List<MenuItem> findByPrefix(String prefix, int limit) {
+        return index.findByPrefix(prefix, limit);
+    }
+}
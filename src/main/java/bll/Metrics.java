@@ -0,0 +1,74 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Metrics class is the registry of the operation timers of the application.
+ * Timers are registered once by name, usually into a static field next to the code they measure,
+ * and read together through a snapshot that can be printed, written to a file or shown in the GUI.
+ * The fraction of calls that are timed is set with the system property restaurant.metrics.sample
+ * (one call in N, N a power of two, 64 by default, 1 to time every call).
+ */
+public final class Metrics {
+
+    private static final Map<String, OperationTimer> TIMERS = new ConcurrentSkipListMap<>();
+
+    static volatile int sampleMask = Integer.highestOneBit(Math.max(1, Integer.getInteger("restaurant.metrics.sample", 64))) - 1;
+    private static volatile long since = System.nanoTime();
+
+    private Metrics() {
+    }
+
+    /**
+     * Get the timer of an operation, registering it on first use.
+     * @pre name != null
+     * @param name name of the operation, such as "restaurant.createNewOrder"
+     * @return timer
+     */
+    public static OperationTimer timer(String name) {
+        assert name != null;
+        return TIMERS.computeIfAbsent(name, OperationTimer::new);
+    }
+
+    /**
+     * Time one call in every given number of calls.
+     * @pre sampleEvery > 0
+     * @param sampleEvery number of calls per timed call, rounded down to a power of two
+     */
+    public static void setSampleEvery(int sampleEvery) {
+        assert sampleEvery > 0;
+        sampleMask = Integer.highestOneBit(sampleEvery) - 1;
+    }
+
+    public static int getSampleEvery() {
+        return sampleMask + 1;
+    }
+
+    /**
+     * Read all timers.
+     * @return snapshot of the timers, sorted by name
+     */
+    public static MetricsSnapshot snapshot() {
+        long elapsed = System.nanoTime() - since;
+        List<MetricsSnapshot.Entry> entries = new ArrayList<>();
+        for (OperationTimer timer : TIMERS.values()) {
+            Histogram h = timer.getLatencies();
+            entries.add(new MetricsSnapshot.Entry(timer.getName(), timer.getCalls(), h.getCount(), h.getMean(),
+                    h.getPercentile(0.5), h.getPercentile(0.9), h.getPercentile(0.99), h.getPercentile(0.999),
+                    h.getMax()));
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), elapsed, entries);
+    }
+
+    /**
+     * Clear all timers and restart the period the rates are computed over.
+     */
+    public static void reset() {
+        for (OperationTimer timer : TIMERS.values())
+            timer.reset();
+        since = System.nanoTime();
+    }
+}
@@ -0,0 +1,128 @@
+package bll;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * MetricsSnapshot class holds the values of all operation timers at one moment.
+ * Latencies are in nanoseconds; rates are over the period since the metrics were started or reset.
+ */
+public class MetricsSnapshot {
+
+    private final long time;
+    private final long periodNanos;
+    private final List<Entry> entries;
+
+    MetricsSnapshot(long time, long periodNanos, List<Entry> entries) {
+        this.time = time;
+        this.periodNanos = periodNanos;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Get the moment of the snapshot.
+     * @return time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Format the snapshot as comma separated values with a header line, latencies in microseconds.
+     * @return text of the snapshot
+     */
+    public String toCsv() {
+        StringBuilder out = new StringBuilder("operation,calls,calls_per_minute,sampled,mean_us,p50_us,p90_us,p99_us,p999_us,max_us\n");
+        for (Entry e : entries)
+            out.append(String.format(Locale.ROOT, "%s,%d,%.1f,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                    e.name, e.calls, getCallsPerMinute(e), e.sampled, e.mean / 1e3, e.p50 / 1e3, e.p90 / 1e3,
+                    e.p99 / 1e3, e.p999 / 1e3, e.max / 1e3));
+        return out.toString();
+    }
+
+    /**
+     * Get the rate of an operation over the period of the snapshot.
+     * @param entry entry of the operation
+     * @return calls per minute
+     */
+    public double getCallsPerMinute(Entry entry) {
+        return periodNanos <= 0 ? 0 : entry.calls * 60e9 / periodNanos;
+    }
+
+    /**
+     * Values of one operation timer.
+     */
+    public static class Entry {
+
+        private final String name;
+        private final long calls;
+        private final long sampled;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        Entry(String name, long calls, long sampled, double mean, long p50, long p90, long p99, long p999, long max) {
+            this.name = name;
+            this.calls = calls;
+            this.sampled = sampled;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Get the number of calls whose latency was recorded.
+         * @return number of sampled calls
+         */
+        public long getSampled() {
+            return sampled;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+}
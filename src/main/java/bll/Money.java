@@ -0,0 +1,70 @@
+package bll;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money class holds the helpers for the fixed point representation of prices.
+ * Prices are kept as a long number of minor units (cents), so sums are exact
+ * and can be computed in primitive loops without boxing.
+ */
+public final class Money {
+
+    /**
+     * Number of decimals of a price.
+     */
+    public static final int SCALE = 2;
+    /**
+     * Number of minor units in one major unit.
+     */
+    public static final long MINOR_PER_MAJOR = 100;
+
+    private Money() {
+    }
+
+    /**
+     * Parse a decimal price, rounding half up to the nearest minor unit.
+     * @pre text != null
+     * @param text price such as "12.5"
+     * @return price in minor units
+     * @throws NumberFormatException if the text is not a number
+     */
+    public static long parse(String text) {
+        assert text != null;
+        try {
+            return new BigDecimal(text.trim()).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Price out of range: " + text);
+        }
+    }
+
+    /**
+     * Format a price as a decimal number with two decimals.
+     * @param minor price in minor units
+     * @return formatted price, for example "12.50"
+     */
+    public static String format(long minor) {
+        return appendTo(new StringBuilder(12), minor).toString();
+    }
+
+    /**
+     * Append a price to a builder as a decimal number with two decimals, without allocating.
+     * @pre builder != null
+     * @param builder builder to append to
+     * @param minor price in minor units
+     * @return the builder
+     */
+    public static StringBuilder appendTo(StringBuilder builder, long minor) {
+        assert builder != null;
+        long abs = minor;
+        if (minor < 0) {
+            builder.append('-');
+            abs = -minor;
+        }
+        long cents = abs % MINOR_PER_MAJOR;
+        builder.append(abs / MINOR_PER_MAJOR).append('.');
+        if (cents < 10)
+            builder.append('0');
+        return builder.append(cents);
+    }
+}
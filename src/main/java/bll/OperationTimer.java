@@ -0,0 +1,68 @@
+package bll;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OperationTimer class counts the calls of one operation and records the latency of a sample of them.
+ * Counting is a LongAdder increment; only one call in Metrics.getSampleEvery() reads the clock, so
+ * the cost of a call that is not sampled stays at a few nanoseconds. Percentiles of a uniform sample
+ * are those of all calls.
+ *
+ * Usage: long start = timer.start(); ... timer.stop(start);
+ */
+public class OperationTimer {
+
+    private final String name;
+    private final LongAdder calls;
+    private final Histogram latencies;
+
+    OperationTimer(String name) {
+        this.name = name;
+        this.calls = new LongAdder();
+        this.latencies = new Histogram();
+    }
+
+    /**
+     * Count a call and start timing it if it is sampled.
+     * @return start time to be passed to stop(), 0 if the call is not sampled
+     */
+    public long start() {
+        calls.increment();
+        int mask = Metrics.sampleMask;
+        if ((ThreadLocalRandom.current().nextInt() & mask) != 0)
+            return 0;
+        long now = System.nanoTime();
+        return now == 0 ? 1 : now;
+    }
+
+    /**
+     * Record the latency of a sampled call.
+     * @param start value returned by start()
+     */
+    public void stop(long start) {
+        if (start != 0)
+            latencies.record(System.nanoTime() - start);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * Get the latencies of the sampled calls in nanoseconds.
+     * @return histogram
+     */
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    void reset() {
+        calls.reset();
+        latencies.reset();
+    }
+}
@@ -2,17 +2,24 @@ package bll;
 
 import java.io.Serializable;
 import java.util.Date;
-import java.util.Objects;
 
+/**
+ * Order class identifies an order by its id, the moment it was placed and its table.
+ * The moment is kept as epoch milliseconds instead of a Date object to keep orders small.
+ */
 public class Order implements Serializable {
 
     int orderId;
-    Date date;
+    long time;
     int table;
 
     public Order(int orderId, Date date, int table) {
+        this(orderId, date.getTime(), table);
+    }
+
+    public Order(int orderId, long time, int table) {
         this.orderId = orderId;
-        this.date = date;
+        this.time = time;
         this.table = table;
     }
 
@@ -21,7 +28,15 @@ public class Order implements Serializable {
     }
 
     public Date getDate() {
-        return date;
+        return new Date(time);
+    }
+
+    /**
+     * Get the moment the order was placed.
+     * @return epoch milliseconds
+     */
+    public long getTime() {
+        return time;
     }
 
     public int getTable() {
@@ -35,11 +50,14 @@ public class Order implements Serializable {
         Order order = (Order) o;
         return orderId == order.orderId &&
                 table == order.table &&
-                Objects.equals(date, order.date);
+                time == order.time;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(orderId, date, table);
+        int result = orderId;
+        result = 31 * result + Long.hashCode(time);
+        result = 31 * result + table;
+        return result;
     }
 }
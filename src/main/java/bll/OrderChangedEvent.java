@@ -0,0 +1,28 @@
+package bll;
+
+/**
+ * OrderChangedEvent class announces that the lines of an order were edited.
+ * One event is published for the whole edit, however many lines it changed.
+ */
+public class OrderChangedEvent extends RestaurantEvent {
+
+    private final Order order;
+    private final OrderDelta delta;
+
+    public OrderChangedEvent(Order order, OrderDelta delta) {
+        this.order = order;
+        this.delta = delta;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the edit that was applied to the order.
+     * @return line operations of the edit
+     */
+    public OrderDelta getDelta() {
+        return delta;
+    }
+}
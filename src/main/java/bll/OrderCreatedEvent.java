@@ -0,0 +1,17 @@
+package bll;
+
+/**
+ * OrderCreatedEvent class announces a new order.
+ */
+public class OrderCreatedEvent extends RestaurantEvent {
+
+    private final Order order;
+
+    public OrderCreatedEvent(Order order) {
+        this.order = order;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+}
@@ -0,0 +1,27 @@
+package bll;
+
+/**
+ * OrderDeletedEvent class announces that an order was deleted.
+ */
+public class OrderDeletedEvent extends RestaurantEvent {
+
+    private final Order order;
+    private final int position;
+
+    public OrderDeletedEvent(Order order, int position) {
+        this.order = order;
+        this.position = position;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the position the order had in the list of orders before it was deleted.
+     * @return position of the order
+     */
+    public int getPosition() {
+        return position;
+    }
+}
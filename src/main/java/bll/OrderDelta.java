@@ -0,0 +1,126 @@
+package bll;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OrderDelta class describes an edit of an order as line operations: adding units of a menu item,
+ * removing units of a menu item and setting the number of units of a menu item.
+ * The operations are applied in the order they were added, all of them or none, so editing an order
+ * costs as much as the lines it changes and not as much as the whole order.
+ * Menu items are matched by identity, like the lines of the order store.
+ */
+public class OrderDelta {
+
+    public static final int ADD = 0;
+    public static final int REMOVE = 1;
+    public static final int SET_QUANTITY = 2;
+
+    private final List<MenuItem> menuItems;
+    private int[] kinds;
+    private int[] quantities;
+
+    public OrderDelta() {
+        this.menuItems = new ArrayList<>();
+        this.kinds = new int[4];
+        this.quantities = new int[4];
+    }
+
+    /**
+     * Add units of a menu item, priced at the current price of the item.
+     * @pre menuItem != null, quantity > 0
+     * @param menuItem menu item ordered
+     * @param quantity number of units
+     * @return this delta
+     */
+    public OrderDelta addLine(MenuItem menuItem, int quantity) {
+        assert (menuItem != null) && (quantity > 0);
+        return append(ADD, menuItem, quantity);
+    }
+
+    /**
+     * Remove units of a menu item, starting with the line added last.
+     * @pre menuItem != null, quantity > 0
+     * @param menuItem menu item
+     * @param quantity number of units
+     * @return this delta
+     */
+    public OrderDelta removeLine(MenuItem menuItem, int quantity) {
+        assert (menuItem != null) && (quantity > 0);
+        return append(REMOVE, menuItem, quantity);
+    }
+
+    /**
+     * Set the number of units of a menu item, adding or removing the difference.
+     * @pre menuItem != null, quantity >= 0
+     * @param menuItem menu item
+     * @param quantity number of units after the edit
+     * @return this delta
+     */
+    public OrderDelta changeQuantity(MenuItem menuItem, int quantity) {
+        assert (menuItem != null) && (quantity >= 0);
+        return append(SET_QUANTITY, menuItem, quantity);
+    }
+
+    private OrderDelta append(int kind, MenuItem menuItem, int quantity) {
+        int i = menuItems.size();
+        if (i == kinds.length) {
+            kinds = Arrays.copyOf(kinds, i * 2);
+            quantities = Arrays.copyOf(quantities, i * 2);
+        }
+        menuItems.add(menuItem);
+        kinds[i] = kind;
+        quantities[i] = quantity;
+        return this;
+    }
+
+    /**
+     * Compute the delta that turns the lines of an order into a list of menu items, one unit per entry.
+     * Only the items whose number of units differs get an operation.
+     * @pre oldLines != null, newItems != null
+     * @param oldLines lines of the order before the edit
+     * @param newItems items of the order after the edit
+     * @return delta setting the quantity of every changed item
+     */
+    public static OrderDelta between(OrderLines oldLines, List<MenuItem> newItems) {
+        assert (oldLines != null) && (newItems != null);
+        Map<MenuItem, int[]> units = new IdentityHashMap<>();
+        for (int i = 0; i < oldLines.size(); i++)
+            units.computeIfAbsent(oldLines.getMenuItem(i), k -> new int[2])[0] += oldLines.getQuantity(i);
+        for (MenuItem m : newItems)
+            units.computeIfAbsent(m, k -> new int[2])[1]++;
+        OrderDelta delta = new OrderDelta();
+        for (Map.Entry<MenuItem, int[]> entry : units.entrySet())
+            if (entry.getValue()[0] != entry.getValue()[1])
+                delta.changeQuantity(entry.getKey(), entry.getValue()[1]);
+        return delta;
+    }
+
+    public int size() {
+        return menuItems.size();
+    }
+
+    public boolean isEmpty() {
+        return menuItems.isEmpty();
+    }
+
+    /**
+     * Get the kind of an operation.
+     * @param index index of the operation
+     * @return ADD, REMOVE or SET_QUANTITY
+     */
+    public int getKind(int index) {
+        return kinds[index];
+    }
+
+    public MenuItem getMenuItem(int index) {
+        return menuItems.get(index);
+    }
+
+    public int getQuantity(int index) {
+        return quantities[index];
+    }
+}
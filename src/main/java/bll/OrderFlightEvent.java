@@ -0,0 +1,57 @@
+package bll;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * OrderFlightEvent class is the Flight Recorder event of one step in the life of an order.
+ * Its duration covers the whole call, waiting for locks and for the command log included, and it is
+ * recorded on the calling thread, so a slow step lines up with the GC pauses and lock waits of the
+ * same recording. When recording is off begin() and end() do nothing and the fields are never set.
+ *
+ * Usage: event.begin(); ... event.end(); if (event.shouldCommit()) event.commit(operation, order, lineCount);
+ */
+@Name("restaurant.Order")
+@Label("Order Operation")
+@Category({"Restaurant", "Orders"})
+@Description("Order created, priced, billed, edited or deleted")
+@StackTrace(false)
+public class OrderFlightEvent extends Event {
+
+    public static final String CREATED = "created";
+    public static final String PRICED = "priced";
+    public static final String BILLED = "billed";
+    public static final String EDITED = "edited";
+    public static final String DELETED = "deleted";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Order Id")
+    int orderId;
+
+    @Label("Table")
+    int table;
+
+    @Label("Lines")
+    @Description("Number of lines of the order")
+    int lineCount;
+
+    /**
+     * Fill in the order and commit the event.
+     * @param operation one of CREATED, PRICED, BILLED, EDITED and DELETED
+     * @param order order
+     * @param lineCount number of lines of the order
+     */
+    void commit(String operation, Order order, int lineCount) {
+        this.operation = operation;
+        this.orderId = order.getOrderId();
+        this.table = order.getTable();
+        this.lineCount = lineCount;
+        commit();
+    }
+}
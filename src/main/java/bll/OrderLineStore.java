@@ -0,0 +1,442 @@
+package bll;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * OrderLineStore class holds the lines of all orders in packed primitive arrays.
+ * A line is a menu item id, a quantity and the unit price the item was ordered at, so repeated items
+ * take one line instead of one object reference each. The lines of an order are kept contiguous in a
+ * region identified by the slot of the order. Menu items are mapped to int ids by this store; the lines of
+ * each id are counted and the id is given back once no line refers to its item, so the store does not keep
+ * the items of deleted orders and edited menus alive.
+ */
+public class OrderLineStore implements Serializable {
+
+    private static final int MIN_REGION = 2;
+
+    /**
+     * Columns of the lines.
+     */
+    private int[] itemIds;
+    private int[] quantities;
+    private long[] unitPrices;
+    /**
+     * Number of entries of the columns in use, including the ones of abandoned regions.
+     */
+    private int used;
+    /**
+     * Number of entries of the columns that belong to abandoned regions.
+     */
+    private int garbage;
+
+    /**
+     * Per slot start of the region, number of lines, size of the region and total of the order.
+     */
+    private int[] start;
+    private int[] count;
+    private int[] capacity;
+    private long[] totals;
+    private boolean[] live;
+    private int slots;
+    private int[] freeSlots;
+    private int freeCount;
+
+    /**
+     * Menu items by id and ids by menu item, null for an id given back.
+     */
+    private MenuItem[] itemsById;
+    private int itemCount;
+    private final Map<MenuItem, Integer> ids;
+    /**
+     * Per id number of lines of the item, and the ids given back to be reused.
+     */
+    private int[] lineCounts;
+    private int[] freeIds;
+    private int freeIdCount;
+
+    /**
+     * OrderLineStore constructor to initialize the arrays.
+     */
+    public OrderLineStore() {
+        this.itemIds = new int[64];
+        this.quantities = new int[64];
+        this.unitPrices = new long[64];
+        this.start = new int[16];
+        this.count = new int[16];
+        this.capacity = new int[16];
+        this.totals = new long[16];
+        this.live = new boolean[16];
+        this.freeSlots = new int[16];
+        this.itemsById = new MenuItem[16];
+        this.ids = new IdentityHashMap<>();
+        this.lineCounts = new int[16];
+        this.freeIds = new int[16];
+    }
+
+    private OrderLineStore(OrderLineStore other) {
+        this.itemIds = Arrays.copyOf(other.itemIds, other.used);
+        this.quantities = Arrays.copyOf(other.quantities, other.used);
+        this.unitPrices = Arrays.copyOf(other.unitPrices, other.used);
+        this.used = other.used;
+        this.garbage = other.garbage;
+        this.start = Arrays.copyOf(other.start, other.slots);
+        this.count = Arrays.copyOf(other.count, other.slots);
+        this.capacity = Arrays.copyOf(other.capacity, other.slots);
+        this.totals = Arrays.copyOf(other.totals, other.slots);
+        this.live = Arrays.copyOf(other.live, other.slots);
+        this.slots = other.slots;
+        this.freeSlots = Arrays.copyOf(other.freeSlots, other.freeCount);
+        this.freeCount = other.freeCount;
+        this.itemsById = Arrays.copyOf(other.itemsById, other.itemCount);
+        this.itemCount = other.itemCount;
+        this.ids = new IdentityHashMap<>(other.ids);
+        this.lineCounts = Arrays.copyOf(other.lineCounts, other.itemCount);
+        this.freeIds = Arrays.copyOf(other.freeIds, other.freeIdCount);
+        this.freeIdCount = other.freeIdCount;
+    }
+
+    /**
+     * Copy the store. Only arrays are copied, so this is cheap compared to copying the lines one by one.
+     * The copy is trimmed to the entries in use and is meant to be read only.
+     * @return independent copy
+     */
+    OrderLineStore copy() {
+        return new OrderLineStore(this);
+    }
+
+    /**
+     * Store the lines of a new order.
+     * @pre menuItems != null
+     * @param menuItems menu items ordered, priced at their current price
+     * @return slot of the order
+     */
+    public int allocate(List<MenuItem> menuItems) {
+        assert menuItems != null;
+        int slot;
+        if (freeCount > 0)
+            slot = freeSlots[--freeCount];
+        else {
+            if (slots == start.length)
+                growSlots();
+            slot = slots++;
+        }
+        int size = Math.max(menuItems.size(), MIN_REGION);
+        start[slot] = reserve(size);
+        count[slot] = 0;
+        capacity[slot] = size;
+        totals[slot] = 0;
+        live[slot] = true;
+        for (int i = 0, n = menuItems.size(); i < n; i++)
+            addLine(slot, menuItems.get(i), 1);
+        // repeated items share a line, give the unused end of the region back
+        int lines = Math.max(count[slot], MIN_REGION);
+        if (lines < size && start[slot] + size == used) {
+            used = start[slot] + lines;
+            capacity[slot] = lines;
+        }
+        return slot;
+    }
+
+    /**
+     * Store the lines of an order read back from storage, keeping their unit prices.
+     * @pre lines != null
+     * @param lines lines of the order
+     * @return slot of the order
+     */
+    public int restore(OrderLines lines) {
+        assert lines != null;
+        int slot = allocate(Collections.<MenuItem>emptyList());
+        if (lines.size() > capacity[slot])
+            relocate(slot, lines.size());
+        int from = start[slot];
+        for (int i = 0; i < lines.size(); i++) {
+            itemIds[from + i] = idOf(lines.getMenuItem(i));
+            lineCounts[itemIds[from + i]]++;
+            quantities[from + i] = lines.getQuantity(i);
+            unitPrices[from + i] = lines.getPrice(i);
+        }
+        count[slot] = lines.size();
+        totals[slot] = lines.getTotal();
+        return slot;
+    }
+
+    /**
+     * Drop the lines of an order and make its slot available again.
+     * @param slot slot of the order
+     */
+    public void free(int slot) {
+        assert live[slot];
+        for (int i = start[slot], to = start[slot] + count[slot]; i < to; i++)
+            release(itemIds[i]);
+        live[slot] = false;
+        garbage += capacity[slot];
+        count[slot] = 0;
+        capacity[slot] = 0;
+        totals[slot] = 0;
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = slot;
+        compactIfSparse();
+    }
+
+    /**
+     * Add units of a menu item to an order, priced at the current price of the item.
+     * Units join an existing line of the same item and price.
+     * @pre live slot, menuItem != null, quantity > 0
+     * @param slot slot of the order
+     * @param menuItem menu item ordered
+     * @param quantity number of units
+     * @return price added to the total of the order
+     */
+    public long addLine(int slot, MenuItem menuItem, int quantity) {
+        assert live[slot] && (menuItem != null) && (quantity > 0);
+        int id = idOf(menuItem);
+        long price = menuItem.computePrice();
+        int from = start[slot];
+        int to = from + count[slot];
+        for (int i = from; i < to; i++)
+            if (itemIds[i] == id && unitPrices[i] == price) {
+                quantities[i] += quantity;
+                totals[slot] += price * quantity;
+                return price * quantity;
+            }
+        if (count[slot] == capacity[slot]) {
+            relocate(slot, capacity[slot] * 2);
+            compactIfSparse();
+        }
+        int i = start[slot] + count[slot]++;
+        itemIds[i] = id;
+        lineCounts[id]++;
+        quantities[i] = quantity;
+        unitPrices[i] = price;
+        totals[slot] += price * quantity;
+        return price * quantity;
+    }
+
+    /**
+     * Remove units of a menu item from an order, starting with the line added last.
+     * @pre live slot, quantity > 0
+     * @param slot slot of the order
+     * @param menuItem menu item
+     * @param quantity number of units
+     * @return price removed from the total of the order or -1 if the order does not have that many units
+     */
+    public long removeLine(int slot, MenuItem menuItem, int quantity) {
+        assert live[slot] && (quantity > 0);
+        Integer id = ids.get(menuItem);
+        if (id == null || quantity > quantityOf(slot, id))
+            return -1;
+        long removed = 0;
+        int from = start[slot];
+        for (int i = from + count[slot] - 1; i >= from && quantity > 0; i--) {
+            if (itemIds[i] != id)
+                continue;
+            int units = Math.min(quantity, quantities[i]);
+            removed += unitPrices[i] * units;
+            quantity -= units;
+            quantities[i] -= units;
+            if (quantities[i] == 0) {
+                int tail = from + count[slot] - i - 1;
+                System.arraycopy(itemIds, i + 1, itemIds, i, tail);
+                System.arraycopy(quantities, i + 1, quantities, i, tail);
+                System.arraycopy(unitPrices, i + 1, unitPrices, i, tail);
+                count[slot]--;
+                release(id);
+            }
+        }
+        totals[slot] -= removed;
+        return removed;
+    }
+
+    /**
+     * Get the number of units of a menu item in an order.
+     * @param slot slot of the order
+     * @param menuItem menu item
+     * @return number of units
+     */
+    public int getQuantity(int slot, MenuItem menuItem) {
+        Integer id = ids.get(menuItem);
+        return id == null ? 0 : quantityOf(slot, id);
+    }
+
+    /**
+     * Tell whether an order has a line of a menu item with a given name.
+     * @param slot slot of the order
+     * @param name name of the menu item
+     * @return true if a line of the order has an item of that name
+     */
+    public boolean containsName(int slot, String name) {
+        for (int i = start[slot], to = start[slot] + count[slot]; i < to; i++)
+            if (itemsById[itemIds[i]].getName().equals(name))
+                return true;
+        return false;
+    }
+
+    /**
+     * Get the running total of an order.
+     * @param slot slot of the order
+     * @return total in minor units
+     */
+    public long getTotal(int slot) {
+        return totals[slot];
+    }
+
+    /**
+     * Get the number of lines of an order.
+     * @param slot slot of the order
+     * @return number of lines
+     */
+    public int getLineCount(int slot) {
+        return count[slot];
+    }
+
+    /**
+     * Call an action with the menu item of every line of an order, once per line.
+     * @param slot slot of the order
+     * @param action action
+     */
+    public void forEachItem(int slot, Consumer<MenuItem> action) {
+        for (int i = start[slot], to = start[slot] + count[slot]; i < to; i++)
+            action.accept(itemsById[itemIds[i]]);
+    }
+
+    /**
+     * Call an action with every menu item that has an id in this store.
+     * @param action action
+     */
+    public void forEachKnownItem(Consumer<MenuItem> action) {
+        for (int id = 0; id < itemCount; id++)
+            if (itemsById[id] != null)
+                action.accept(itemsById[id]);
+    }
+
+    /**
+     * Copy the lines of an order into an independent object.
+     * @param slot slot of the order
+     * @return lines of the order
+     */
+    public OrderLines copyLines(int slot) {
+        int n = count[slot];
+        int from = start[slot];
+        MenuItem[] items = new MenuItem[n];
+        for (int i = 0; i < n; i++)
+            items[i] = itemsById[itemIds[from + i]];
+        return new OrderLines(items, Arrays.copyOfRange(quantities, from, from + n),
+                Arrays.copyOfRange(unitPrices, from, from + n), totals[slot]);
+    }
+
+    private int quantityOf(int slot, int id) {
+        int units = 0;
+        for (int i = start[slot], to = start[slot] + count[slot]; i < to; i++)
+            if (itemIds[i] == id)
+                units += quantities[i];
+        return units;
+    }
+
+    /**
+     * Get the id of a menu item, giving it a free id if it has none. The caller counts the line it adds.
+     */
+    private int idOf(MenuItem menuItem) {
+        Integer id = ids.get(menuItem);
+        if (id != null)
+            return id;
+        int newId;
+        if (freeIdCount > 0)
+            newId = freeIds[--freeIdCount];
+        else {
+            if (itemCount == itemsById.length) {
+                itemsById = Arrays.copyOf(itemsById, itemCount * 2);
+                lineCounts = Arrays.copyOf(lineCounts, itemCount * 2);
+            }
+            newId = itemCount++;
+        }
+        itemsById[newId] = menuItem;
+        lineCounts[newId] = 0;
+        ids.put(menuItem, newId);
+        return newId;
+    }
+
+    /**
+     * Count a line of an id less and give the id back once no line refers to its item.
+     */
+    private void release(int id) {
+        if (--lineCounts[id] > 0)
+            return;
+        ids.remove(itemsById[id]);
+        itemsById[id] = null;
+        if (freeIdCount == freeIds.length)
+            freeIds = Arrays.copyOf(freeIds, Math.max(16, freeIdCount * 2));
+        freeIds[freeIdCount++] = id;
+    }
+
+    /**
+     * Reserve a region at the end of the columns.
+     */
+    private int reserve(int size) {
+        if (used + size > itemIds.length) {
+            int length = Math.max(itemIds.length * 2, used + size);
+            itemIds = Arrays.copyOf(itemIds, length);
+            quantities = Arrays.copyOf(quantities, length);
+            unitPrices = Arrays.copyOf(unitPrices, length);
+        }
+        int from = used;
+        used += size;
+        return from;
+    }
+
+    /**
+     * Move the lines of an order to a bigger region at the end of the columns.
+     */
+    private void relocate(int slot, int size) {
+        int to = reserve(size);
+        int from = start[slot];
+        System.arraycopy(itemIds, from, itemIds, to, count[slot]);
+        System.arraycopy(quantities, from, quantities, to, count[slot]);
+        System.arraycopy(unitPrices, from, unitPrices, to, count[slot]);
+        garbage += capacity[slot];
+        start[slot] = to;
+        capacity[slot] = size;
+    }
+
+    /**
+     * Rewrite the columns without the abandoned regions once they take more than half of them.
+     */
+    private void compactIfSparse() {
+        if (garbage < 1024 || garbage * 2 < used)
+            return;
+        int length = Math.max(used - garbage, 64);
+        int[] newItemIds = new int[length];
+        int[] newQuantities = new int[length];
+        long[] newUnitPrices = new long[length];
+        int position = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (!live[slot])
+                continue;
+            System.arraycopy(itemIds, start[slot], newItemIds, position, count[slot]);
+            System.arraycopy(quantities, start[slot], newQuantities, position, count[slot]);
+            System.arraycopy(unitPrices, start[slot], newUnitPrices, position, count[slot]);
+            start[slot] = position;
+            position += capacity[slot];
+        }
+        itemIds = newItemIds;
+        quantities = newQuantities;
+        unitPrices = newUnitPrices;
+        used = position;
+        garbage = 0;
+    }
+
+    private void growSlots() {
+        int length = start.length * 2;
+        start = Arrays.copyOf(start, length);
+        count = Arrays.copyOf(count, length);
+        capacity = Arrays.copyOf(capacity, length);
+        totals = Arrays.copyOf(totals, length);
+        live = Arrays.copyOf(live, length);
+    }
+}
@@ -0,0 +1,133 @@
+package bll;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * OrderLines class is a read only copy of the lines of one order.
+ * Each line is a menu item, the number of units ordered and the unit price the item was ordered at.
+ */
+public class OrderLines {
+
+    private final MenuItem[] items;
+    private final int[] quantities;
+    private final long[] prices;
+    private final long total;
+    private final int units;
+    /**
+     * Number of units up to and including each line, so a unit is found by binary search.
+     */
+    private final int[] ends;
+
+    /**
+     * OrderLines constructor for lines read back from storage.
+     * @pre items, quantities and prices have the same length
+     * @param items menu item of each line
+     * @param quantities number of units of each line
+     * @param prices unit price of each line in minor units
+     */
+    public OrderLines(MenuItem[] items, int[] quantities, long[] prices) {
+        this(items, quantities, prices, totalOf(quantities, prices));
+    }
+
+    OrderLines(MenuItem[] items, int[] quantities, long[] prices, long total) {
+        this.items = items;
+        this.quantities = quantities;
+        this.prices = prices;
+        this.total = total;
+        this.ends = new int[quantities.length];
+        int buf = 0;
+        for (int i = 0; i < quantities.length; i++)
+            ends[i] = buf += quantities[i];
+        this.units = buf;
+    }
+
+    private static long totalOf(int[] quantities, long[] prices) {
+        assert quantities.length == prices.length;
+        long buf = 0;
+        for (int i = 0; i < quantities.length; i++)
+            buf += prices[i] * quantities[i];
+        return buf;
+    }
+
+    /**
+     * Get the number of lines.
+     * @return number of distinct lines
+     */
+    public int size() {
+        return items.length;
+    }
+
+    public MenuItem getMenuItem(int index) {
+        return items[index];
+    }
+
+    public int getQuantity(int index) {
+        return quantities[index];
+    }
+
+    /**
+     * Get the unit price of a line.
+     * @param index index of the line
+     * @return price of one unit in minor units
+     */
+    public long getPrice(int index) {
+        return prices[index];
+    }
+
+    /**
+     * Get the total cost of the order.
+     * @return sum of the prices of the lines in minor units
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get the number of units ordered.
+     * @return sum of the quantities of the lines
+     */
+    public int getUnitCount() {
+        return units;
+    }
+
+    /**
+     * Call an action with the menu item of every unit ordered, in the order of the lines.
+     * @param action action
+     */
+    public void forEachUnit(Consumer<? super MenuItem> action) {
+        for (int i = 0; i < items.length; i++)
+            for (int unit = 0; unit < quantities[i]; unit++)
+                action.accept(items[i]);
+    }
+
+    /**
+     * Read only list view of the menu items, with one element for each unit ordered.
+     * An element is found in logarithmic time in the number of lines; forEachUnit walks them all in linear time.
+     * @return list of menu items
+     */
+    public List<MenuItem> asMenuItemList() {
+        return new AbstractList<MenuItem>() {
+            @Override
+            public MenuItem get(int index) {
+                if (index < 0 || index >= units)
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + units);
+                // first line ending after the unit, lines of no units end where the one before does
+                int line = Arrays.binarySearch(ends, index + 1);
+                if (line < 0)
+                    line = -line - 1;
+                else
+                    while (line > 0 && ends[line - 1] == index + 1)
+                        line--;
+                return items[line];
+            }
+
+            @Override
+            public int size() {
+                return units;
+            }
+        };
+    }
+}
@@ -0,0 +1,653 @@
+package bll;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * OrderStore class holds the orders of the restaurant together with their lines.
+ * Keeps the orders in the order they were added and gives access by position and by order id without
+ * copying the key set of a map on every access, so that the GUI can walk the orders. A removed order leaves
+ * an empty place that is compacted away once they make up half of the list; a Fenwick tree of the places
+ * in use turns positions into places, so removing and accessing by position take logarithmic time.
+ * The lines of the orders are packed in an OrderLineStore, each order owning a slot of it.
+ * Running totals are kept for every order and for every table with open orders.
+ * Secondary indexes by table, by time and by menu item answer the queries of the waiters without
+ * walking the orders; they are not serialized but rebuilt when the store is read back.
+ */
+public class OrderStore implements Serializable, Iterable<Order> {
+
+    /**
+     * Orders in the order they were added, null at the places of removed orders.
+     */
+    private final List<Order> orderList;
+    /**
+     * Slot in the line store of the order at each place, parallel to the list of orders.
+     */
+    private int[] positionSlots;
+    /**
+     * Place of the order of each slot of the line store, the inverse of positionSlots.
+     */
+    private transient int[] slotPositions;
+    /**
+     * Number of places of removed orders in the list of orders.
+     */
+    private transient int removedCount;
+    /**
+     * Fenwick tree of the number of orders at the places of the list of orders, 1 in use and 0 removed,
+     * one longer than positionSlots.
+     */
+    private transient int[] liveCounts;
+    /**
+     * Map from an order to its slot in the line store.
+     */
+    private final Map<Order, Integer> slots;
+    /**
+     * Packed lines of all orders.
+     */
+    private final OrderLineStore lineStore;
+    /**
+     * Map from a table number to the running total of its orders.
+     */
+    private final Map<Integer, TableTotal> tableTotals;
+    /**
+     * Version of the menu each order was placed under, by slot in the line store, -1 when unknown.
+     */
+    private long[] menuVersions;
+    /**
+     * Map from a table number to its open orders.
+     */
+    private transient Map<Integer, Set<Order>> ordersByTable;
+    /**
+     * Map from an order id to the orders with that id in the order they were added; ids are entered by the
+     * waiters and need not be unique.
+     */
+    private transient Map<Integer, List<Order>> ordersById;
+    /**
+     * Orders sorted by the moment they were placed.
+     */
+    private transient NavigableSet<Order> ordersByTime;
+    /**
+     * Map from the name of a menu item to the orders with a line of an item of that name, so that an item
+     * replaced in the menu finds the orders placed with the item it replaced.
+     */
+    private transient Map<String, Set<Order>> ordersByItem;
+
+    /**
+     * OrderStore constructor to initialize collections.
+     */
+    public OrderStore() {
+        this.orderList = new ArrayList<>();
+        this.positionSlots = new int[16];
+        this.slots = new HashMap<>();
+        this.lineStore = new OrderLineStore();
+        this.tableTotals = new HashMap<>();
+        this.menuVersions = new long[16];
+        this.slotPositions = new int[16];
+        this.liveCounts = new int[17];
+        initIndexes();
+    }
+
+    private void initIndexes() {
+        ordersByTable = new HashMap<>();
+        ordersById = new HashMap<>();
+        ordersByTime = new TreeSet<>(BY_TIME);
+        ordersByItem = new HashMap<>();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        slotPositions = new int[16];
+        compact();
+        if (menuVersions == null) {
+            menuVersions = new long[16];
+            for (Order order : orderList)
+                setMenuVersion(slots.get(order), -1);
+        }
+        initIndexes();
+        for (int position = 0; position < orderList.size(); position++) {
+            setSlotPosition(positionSlots[position], position);
+            index(orderList.get(position), positionSlots[position]);
+        }
+    }
+
+    /**
+     * Add a new order at the end of the store.
+     * If the order is already present only its lines are replaced.
+     * @pre order != null, items != null
+     * @param order new order
+     * @param items menu items of the order
+     */
+    public void add(Order order, List<MenuItem> items) {
+        add(order, items, -1);
+    }
+
+    /**
+     * Add a new order at the end of the store, recording the version of the menu it was placed under.
+     * If the order is already present only its lines and version are replaced.
+     * @pre order != null, items != null
+     * @param order new order
+     * @param items menu items of the order
+     * @param menuVersion version of the menu, -1 if unknown
+     */
+    public void add(Order order, List<MenuItem> items, long menuVersion) {
+        assert (order != null) && (items != null);
+        int slot = lineStore.allocate(items);
+        setMenuVersion(slot, menuVersion);
+        put(order, slot);
+    }
+
+    /**
+     * Add an order read back from storage, keeping the prices of its lines.
+     * @pre order != null, orderLines != null
+     * @param order order
+     * @param orderLines lines of the order
+     */
+    public void restore(Order order, OrderLines orderLines) {
+        assert (order != null) && (orderLines != null);
+        int slot = lineStore.restore(orderLines);
+        setMenuVersion(slot, -1);
+        put(order, slot);
+    }
+
+    private void put(Order order, int slot) {
+        Integer old = slots.put(order, slot);
+        if (old == null) {
+            int place = orderList.size();
+            boolean grow = place == positionSlots.length;
+            if (grow)
+                positionSlots = Arrays.copyOf(positionSlots, positionSlots.length * 2);
+            positionSlots[place] = slot;
+            setSlotPosition(slot, place);
+            orderList.add(order);
+            if (grow)
+                buildLiveCounts();
+            else
+                countPlace(place, 1);
+            tableTotals.computeIfAbsent(order.getTable(), k -> new TableTotal()).orders++;
+            index(order, slot);
+        } else {
+            int place = slotPositions[old];
+            positionSlots[place] = slot;
+            setSlotPosition(slot, place);
+            tableTotals.get(order.getTable()).total -= lineStore.getTotal(old);
+            lineStore.forEachItem(old, m -> unindexItem(order, m));
+            lineStore.free(old);
+            lineStore.forEachItem(slot, m -> indexItem(order, m));
+        }
+        tableTotals.get(order.getTable()).total += lineStore.getTotal(slot);
+    }
+
+    /**
+     * Remove an order from the store in logarithmic time.
+     * The orders after it move one position up and keep their order.
+     * @param order order to be removed
+     * @return position the order had, -1 if it was not present
+     */
+    public int remove(Order order) {
+        Integer slot = slots.remove(order);
+        if (slot == null)
+            return -1;
+        int place = slotPositions[slot];
+        int position = positionOf(place);
+        orderList.set(place, null);
+        countPlace(place, -1);
+        removedCount++;
+        TableTotal tableTotal = tableTotals.get(order.getTable());
+        tableTotal.total -= lineStore.getTotal(slot);
+        unindex(order, slot);
+        lineStore.free(slot);
+        if (--tableTotal.orders == 0)
+            tableTotals.remove(order.getTable());
+        if (removedCount >= 64 && removedCount * 2 > orderList.size())
+            compact();
+        return position;
+    }
+
+    /**
+     * Get the position of an order in logarithmic time.
+     * @param order order
+     * @return position of the order, -1 if it is not present
+     */
+    public int indexOf(Order order) {
+        Integer slot = slots.get(order);
+        return slot == null ? -1 : positionOf(slotPositions[slot]);
+    }
+
+    // PLACES ==========================================================================================================
+
+    /**
+     * Drop the places of the removed orders from the list of orders.
+     */
+    private void compact() {
+        int live = 0;
+        for (int place = 0; place < orderList.size(); place++) {
+            Order order = orderList.get(place);
+            if (order == null)
+                continue;
+            orderList.set(live, order);
+            positionSlots[live] = positionSlots[place];
+            setSlotPosition(positionSlots[live], live);
+            live++;
+        }
+        orderList.subList(live, orderList.size()).clear();
+        removedCount = 0;
+        buildLiveCounts();
+    }
+
+    /**
+     * Rebuild the Fenwick tree from the list of orders in linear time.
+     */
+    private void buildLiveCounts() {
+        liveCounts = new int[positionSlots.length + 1];
+        for (int i = 1; i < liveCounts.length; i++) {
+            if (i <= orderList.size() && orderList.get(i - 1) != null)
+                liveCounts[i]++;
+            int parent = i + (i & -i);
+            if (parent < liveCounts.length)
+                liveCounts[parent] += liveCounts[i];
+        }
+    }
+
+    private void countPlace(int place, int delta) {
+        for (int i = place + 1; i < liveCounts.length; i += i & -i)
+            liveCounts[i] += delta;
+    }
+
+    /**
+     * Get the number of orders before a place.
+     */
+    private int positionOf(int place) {
+        if (removedCount == 0)
+            return place;
+        int position = 0;
+        for (int i = place; i > 0; i -= i & -i)
+            position += liveCounts[i];
+        return position;
+    }
+
+    /**
+     * Get the place of the order at a position.
+     */
+    private int placeOf(int position) {
+        if (removedCount == 0)
+            return position;
+        int place = 0;
+        for (int step = Integer.highestOneBit(liveCounts.length - 1); step > 0; step >>= 1)
+            if (place + step < liveCounts.length && liveCounts[place + step] <= position) {
+                place += step;
+                position -= liveCounts[place];
+            }
+        return place;
+    }
+
+    /**
+     * Add units of a menu item to an existing order and update the running totals.
+     * @pre contains(order), menuItem != null, quantity > 0
+     * @param order order
+     * @param menuItem menu item ordered
+     * @param quantity number of units
+     */
+    public void addLine(Order order, MenuItem menuItem, int quantity) {
+        assert contains(order) && (menuItem != null) && (quantity > 0);
+        long price = lineStore.addLine(slots.get(order), menuItem, quantity);
+        tableTotals.get(order.getTable()).total += price;
+        indexItem(order, menuItem);
+    }
+
+    /**
+     * Remove units of a menu item from an existing order and update the running totals.
+     * @pre contains(order), quantity > 0
+     * @param order order
+     * @param menuItem menu item of the line
+     * @param quantity number of units
+     * @return true if the order contained that many units of the item
+     */
+    public boolean removeLine(Order order, MenuItem menuItem, int quantity) {
+        assert contains(order) && (quantity > 0);
+        int slot = slots.get(order);
+        long price = lineStore.removeLine(slot, menuItem, quantity);
+        if (price < 0)
+            return false;
+        tableTotals.get(order.getTable()).total -= price;
+        if (!lineStore.containsName(slot, menuItem.getName()))
+            unindexItem(order, menuItem);
+        return true;
+    }
+
+    /**
+     * Apply an edit to the lines of an order and update the running totals and the indexes as each line changes.
+     * The edit is checked before anything is changed, so it is applied completely or not at all.
+     * @pre contains(order), delta != null
+     * @param order order
+     * @param delta line operations
+     * @return true if the edit was applied, false if it removes more units of an item than the order has
+     */
+    public boolean apply(Order order, OrderDelta delta) {
+        assert contains(order) && (delta != null);
+        int slot = slots.get(order);
+        Map<MenuItem, int[]> units = new IdentityHashMap<>();
+        for (int i = 0; i < delta.size(); i++) {
+            MenuItem menuItem = delta.getMenuItem(i);
+            int[] left = units.get(menuItem);
+            if (left == null)
+                units.put(menuItem, left = new int[] {lineStore.getQuantity(slot, menuItem)});
+            switch (delta.getKind(i)) {
+                case OrderDelta.ADD:
+                    left[0] += delta.getQuantity(i);
+                    break;
+                case OrderDelta.REMOVE:
+                    left[0] -= delta.getQuantity(i);
+                    if (left[0] < 0)
+                        return false;
+                    break;
+                default:
+                    left[0] = delta.getQuantity(i);
+            }
+        }
+        for (int i = 0; i < delta.size(); i++) {
+            MenuItem menuItem = delta.getMenuItem(i);
+            int quantity = delta.getQuantity(i);
+            switch (delta.getKind(i)) {
+                case OrderDelta.ADD:
+                    addLine(order, menuItem, quantity);
+                    break;
+                case OrderDelta.REMOVE:
+                    removeLine(order, menuItem, quantity);
+                    break;
+                default:
+                    int current = lineStore.getQuantity(slot, menuItem);
+                    if (quantity > current)
+                        addLine(order, menuItem, quantity - current);
+                    else if (quantity < current)
+                        removeLine(order, menuItem, current - quantity);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of units of a menu item in an order.
+     * @pre contains(order)
+     * @param order order
+     * @param menuItem menu item
+     * @return number of units
+     */
+    public int getQuantity(Order order, MenuItem menuItem) {
+        assert contains(order);
+        return lineStore.getQuantity(slots.get(order), menuItem);
+    }
+
+    /**
+     * Get an order by its position.
+     * @param index position of the order
+     * @return order
+     */
+    public Order get(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        return orderList.get(placeOf(index));
+    }
+
+    /**
+     * Get an order by its id. If more orders share the same id the last one added is returned.
+     * @param orderId id of the order
+     * @return order or null if there is no such order
+     */
+    public Order getById(int orderId) {
+        List<Order> withId = ordersById.get(orderId);
+        return withId == null ? null : withId.get(withId.size() - 1);
+    }
+
+    /**
+     * Get all orders with an id.
+     * @param orderId id of the orders
+     * @return orders in the order they were added
+     */
+    public List<Order> getAllById(int orderId) {
+        List<Order> withId = ordersById.get(orderId);
+        return withId == null ? new ArrayList<>() : new ArrayList<>(withId);
+    }
+
+    /**
+     * Get a copy of the lines of an order.
+     * @param order order
+     * @return lines or null if the order is not in the store
+     */
+    public OrderLines getLines(Order order) {
+        Integer slot = slots.get(order);
+        return slot == null ? null : lineStore.copyLines(slot);
+    }
+
+    /**
+     * Copy the lines of all orders for a snapshot.
+     * Only the packed arrays are copied here, which is fast enough to do while holding a lock;
+     * the OrderLines of each order are built when the returned list is read.
+     * @return lines of the orders, in the same order as asList()
+     */
+    public List<OrderLines> copyAllLines() {
+        final OrderLineStore frozen = lineStore.copy();
+        final int[] frozenSlots = new int[size()];
+        for (int place = 0, position = 0; place < orderList.size(); place++)
+            if (orderList.get(place) != null)
+                frozenSlots[position++] = positionSlots[place];
+        return new AbstractList<OrderLines>() {
+            @Override
+            public OrderLines get(int index) {
+                return frozen.copyLines(frozenSlots[index]);
+            }
+
+            @Override
+            public int size() {
+                return frozenSlots.length;
+            }
+        };
+    }
+
+    /**
+     * Call an action with every menu item the lines of the orders may refer to.
+     * @param action action
+     */
+    public void forEachItem(Consumer<MenuItem> action) {
+        lineStore.forEachKnownItem(action);
+    }
+
+    /**
+     * Get the running total of an order.
+     * @pre contains(order)
+     * @param order order
+     * @return total in minor units
+     */
+    public long getTotal(Order order) {
+        assert contains(order);
+        return lineStore.getTotal(slots.get(order));
+    }
+
+    private void setSlotPosition(int slot, int position) {
+        if (slot >= slotPositions.length)
+            slotPositions = Arrays.copyOf(slotPositions, Math.max(slot + 1, slotPositions.length * 2));
+        slotPositions[slot] = position;
+    }
+
+    private void setMenuVersion(int slot, long menuVersion) {
+        if (slot >= menuVersions.length)
+            menuVersions = Arrays.copyOf(menuVersions, Math.max(slot + 1, menuVersions.length * 2));
+        menuVersions[slot] = menuVersion;
+    }
+
+    /**
+     * Get the version of the menu an order was placed under.
+     * @param order order
+     * @return menu version, -1 if unknown or if the order is not in the store
+     */
+    public long getMenuVersion(Order order) {
+        Integer slot = slots.get(order);
+        return slot == null ? -1 : menuVersions[slot];
+    }
+
+    /**
+     * Get the number of lines of an order.
+     * @param order order
+     * @return number of lines, 0 if the order is not in the store
+     */
+    public int getLineCount(Order order) {
+        Integer slot = slots.get(order);
+        return slot == null ? 0 : lineStore.getLineCount(slot);
+    }
+
+    /**
+     * Get the running total of the open orders of a table.
+     * @param table table number
+     * @return total in minor units, 0 if the table has no orders
+     */
+    public long getTableTotal(int table) {
+        TableTotal tableTotal = tableTotals.get(table);
+        return tableTotal == null ? 0 : tableTotal.total;
+    }
+
+    public boolean contains(Order order) {
+        return slots.containsKey(order);
+    }
+
+    public int size() {
+        return orderList.size() - removedCount;
+    }
+
+    /**
+     * Read only view of the orders in the order they were added, meant for rendering.
+     * Iterating the view skips the places of removed orders in linear time.
+     * @return list of orders
+     */
+    public List<Order> asList() {
+        return new AbstractList<Order>() {
+            @Override
+            public Order get(int index) {
+                return OrderStore.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return OrderStore.this.size();
+            }
+
+            @Override
+            public Iterator<Order> iterator() {
+                return OrderStore.this.iterator();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<Order> iterator() {
+        Iterator<Order> places = orderList.iterator();
+        return new Iterator<Order>() {
+            private Order next = advance();
+
+            private Order advance() {
+                while (places.hasNext()) {
+                    Order order = places.next();
+                    if (order != null)
+                        return order;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Order next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                Order order = next;
+                next = advance();
+                return order;
+            }
+        };
+    }
+
+    // INDEXES =========================================================================================================
+
+    /**
+     * Order of the time index, by time and then by the other fields of Order.equals.
+     */
+    private static final Comparator<Order> BY_TIME = Comparator.comparingLong(Order::getTime)
+            .thenComparingInt(Order::getOrderId).thenComparingInt(Order::getTable);
+
+    private void index(Order order, int slot) {
+        ordersById.computeIfAbsent(order.getOrderId(), k -> new ArrayList<>(1)).add(order);
+        ordersByTable.computeIfAbsent(order.getTable(), k -> new LinkedHashSet<>()).add(order);
+        ordersByTime.add(order);
+        lineStore.forEachItem(slot, m -> indexItem(order, m));
+    }
+
+    private void unindex(Order order, int slot) {
+        List<Order> withId = ordersById.get(order.getOrderId());
+        withId.remove(order);
+        if (withId.isEmpty())
+            ordersById.remove(order.getOrderId());
+        Set<Order> atTable = ordersByTable.get(order.getTable());
+        atTable.remove(order);
+        if (atTable.isEmpty())
+            ordersByTable.remove(order.getTable());
+        ordersByTime.remove(order);
+        lineStore.forEachItem(slot, m -> unindexItem(order, m));
+    }
+
+    private void indexItem(Order order, MenuItem menuItem) {
+        ordersByItem.computeIfAbsent(menuItem.getName(), k -> new LinkedHashSet<>()).add(order);
+    }
+
+    private void unindexItem(Order order, MenuItem menuItem) {
+        Set<Order> withItem = ordersByItem.get(menuItem.getName());
+        if (withItem != null && withItem.remove(order) && withItem.isEmpty())
+            ordersByItem.remove(menuItem.getName());
+    }
+
+    /**
+     * Get the open orders of a table.
+     * @param table table number
+     * @return orders in the order they were added
+     */
+    public List<Order> getByTable(int table) {
+        Set<Order> atTable = ordersByTable.get(table);
+        return atTable == null ? new ArrayList<>() : new ArrayList<>(atTable);
+    }
+
+    /**
+     * Get the orders placed in a time range, in logarithmic time plus the size of the result.
+     * @param fromTime start of the range in epoch milliseconds, included
+     * @param toTime end of the range in epoch milliseconds, excluded
+     * @return orders sorted by time
+     */
+    public List<Order> getBetween(long fromTime, long toTime) {
+        if (fromTime >= toTime)
+            return new ArrayList<>();
+        return new ArrayList<>(ordersByTime.subSet(new Order(Integer.MIN_VALUE, fromTime, Integer.MIN_VALUE), true,
+                new Order(Integer.MIN_VALUE, toTime, Integer.MIN_VALUE), false));
+    }
+
+    /**
+     * Get the orders with a line of a menu item. Items are matched by name, so the orders placed with an item
+     * that was since replaced in the menu are found by its replacement. Composite items are matched as a whole,
+     * an order of a composite does not contain its parts.
+     * @param menuItem menu item
+     * @return orders in the order the item was first added to them
+     */
+    public List<Order> getContaining(MenuItem menuItem) {
+        Set<Order> withItem = ordersByItem.get(menuItem.getName());
+        return withItem == null ? new ArrayList<>() : new ArrayList<>(withItem);
+    }
+
+    /**
+     * Running total and number of open orders of a table.
+     */
+    private static final class TableTotal implements Serializable {
+        private long total;
+        private int orders;
+    }
+}
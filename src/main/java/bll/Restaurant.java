@@ -1,33 +1,122 @@
 package bll;
 
+import dao.BillArchive;
+import dao.BillBatchWriter;
+import dao.BillTemplate;
+import dao.BillingProgress;
+import dao.BillingReport;
+import dao.CommandLog;
 import dao.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Restaurant class holds a list of menu items and a map containing orders and their respective menu items.
  * Implements methods from the IRestaurantProcessing interface.
  * Implements the Serializable interface in order to be able to be serialized in a .ser type file.
- * Extends the Observable class in order to notify the GUI whenever a new order is added.
+ * Publishes an event on its event bus whenever an order is added or deleted or the menu changes.
+ * The class is thread safe so that more waiter terminals can share one instance.
+ * The menu and the orders are guarded by separate read write locks, so reads run in parallel
+ * and menu edits never wait for order entry or the other way around.
+ * Readers of the menu get an immutable MenuVersion, built by each edit before it releases the menu lock and
+ * read without a lock until the next edit, and each order records the version of the menu it was placed under.
+ * When a command log is attached every mutation is logged while the lock is held and the caller
+ * returns once the record is durable. The order lock is always taken before the menu lock.
+ * Order and menu operations are reported to the flight recorder as OrderFlightEvent and MenuFlightEvent.
  */
-public class Restaurant extends Observable implements IRestaurantProcessing, Serializable {
+public class Restaurant implements IRestaurantProcessing, Serializable {
+
+    private static final OperationTimer CREATE_MENU_ITEM = Metrics.timer("restaurant.createNewMenuItem");
+    private static final OperationTimer DELETE_MENU_ITEM = Metrics.timer("restaurant.deleteMenuItem");
+    private static final OperationTimer EDIT_MENU_ITEM = Metrics.timer("restaurant.editMenuItem");
+    private static final OperationTimer CREATE_ORDER = Metrics.timer("restaurant.createNewOrder");
+    private static final OperationTimer COMPUTE_ORDER_PRICE = Metrics.timer("restaurant.computeOrderPrice");
+    private static final OperationTimer GENERATE_BILL = Metrics.timer("restaurant.generateBill");
+    private static final OperationTimer GENERATE_BILLS = Metrics.timer("restaurant.generateBills");
+    private static final OperationTimer ADD_ORDER_LINE = Metrics.timer("restaurant.addOrderLine");
+    private static final OperationTimer REMOVE_ORDER_LINE = Metrics.timer("restaurant.removeOrderLine");
+    private static final OperationTimer EDIT_ORDER = Metrics.timer("restaurant.editOrder");
+    private static final OperationTimer DELETE_ORDER = Metrics.timer("restaurant.deleteOrder");
+    private static final OperationTimer SNAPSHOT = Metrics.timer("restaurant.snapshot");
 
     /**
      * List holding a list of menu items, basic of composite.
      */
     private final List<MenuItem> menuItemList;
     /**
-     * Map that uses an order type object as key to list of menu items values.
-     * This is initialized as a linked hash map in order to preserve the insertion of the items.
+     * Current version of the menu, replaced by every edit.
+     */
+    private transient volatile MenuVersion menu;
+    /**
+     * Number of the version of the menu, incremented on every edit while the menu lock is held.
+     */
+    private transient volatile long menuVersion;
+    /**
+     * Graph from each menu item to the composite items that contain it, used to reprice composites on edit.
+     */
+    private final MenuDependencyGraph menuDependencies;
+    /**
+     * Store that maps orders to their menu items.
+     * It preserves the insertion of the orders and indexes them by position and by id.
+     */
+    private final OrderStore orders;
+    /**
+     * Lock serializing the edits of the menu item list, also held by readers that must see no edit
+     * until they are done, such as the command log resolving menu items by name.
+     */
+    private final ReadWriteLock menuLock;
+    /**
+     * Lock guarding the order store.
+     */
+    private final ReadWriteLock orderLock;
+    /**
+     * Write ahead log of the mutations, null when the restaurant is not journaled.
+     */
+    private transient volatile CommandLog journal;
+    /**
+     * First generation of the command log that is not part of this object's serialized state.
+     */
+    private volatile long journalGeneration;
+    /**
+     * Archive the bills are appended to, null when every bill is written to its own file.
+     */
+    private transient volatile BillArchive billArchive;
+    /**
+     * Layout of the bills, null for the default layout.
+     */
+    private transient volatile BillTemplate billTemplate;
+    /**
+     * Kitchen the new orders are submitted to, null if none is started.
      */
-    private final Map<Order, List<MenuItem>> orders;
+    private transient volatile Kitchen kitchen;
+    /**
+     * Number of mutations since the restaurant was created, used to tell whether it changed since a snapshot.
+     */
+    private final AtomicLong modificationCount;
+    /**
+     * Bus the events of the restaurant are published on.
+     */
+    private transient EventBus eventBus;
 
     /**
      * Restaurant constructor to initialize collections and verify invariant.
      */
     public Restaurant() {
         this.menuItemList = new ArrayList<>();
-        this.orders = new LinkedHashMap<>();
+        this.menuDependencies = new MenuDependencyGraph();
+        this.orders = new OrderStore();
+        this.menuLock = new ReentrantReadWriteLock();
+        this.orderLock = new ReentrantReadWriteLock();
+        this.modificationCount = new AtomicLong();
+        this.eventBus = new EventBus();
+        this.menu = new MenuVersion(menuVersion, menuItemList);
         if(!isWellFormed())
             throw new ExceptionInInitializerError();
     }
@@ -37,7 +126,7 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
      * @return true if the invariant conditions are met and false otherwise.
      */
     private boolean isWellFormed(){
-        if (menuItemList == null || orders == null)
+        if (menuItemList == null || menuDependencies == null || orders == null || menu == null)
             return false;
         return true;
     }
@@ -51,9 +140,32 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
     @Override
     public void createNewMenuItem(MenuItem menuItem) {
         assert menuItem != null;
-        int oldSize = menuItemList.size();
-        menuItemList.add(menuItem);
-        assert menuItemList.size() == oldSize + 1;
+        long start = CREATE_MENU_ITEM.start();
+        MenuFlightEvent event = new MenuFlightEvent();
+        event.begin();
+        CommandLog log;
+        long sequence = 0;
+        int oldSize;
+        menuLock.writeLock().lock();
+        try {
+            oldSize = menuItemList.size();
+            menuItemList.add(menuItem);
+            menuDependencies.register(menuItem);
+            publishMenu();
+            assert menuItemList.size() == oldSize + 1;
+            modificationCount.incrementAndGet();
+            log = journal;
+            if (log != null)
+                sequence = log.logCreateMenuItem(menuItem);
+        } finally {
+            menuLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        eventBus.publish(new MenuChangedEvent(menuItem, MenuChangedEvent.CREATED, oldSize));
+        event.end();
+        if (event.shouldCommit())
+            event.commit(MenuFlightEvent.CREATED, menuItem, oldSize);
+        CREATE_MENU_ITEM.stop(start);
     }
 
     /**
@@ -64,26 +176,76 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
      */
     @Override
     public void deleteMenuItem(int index) {
-        assert (index >= 0) && (index < menuItemList.size());
-        int oldSize = menuItemList.size();
-        menuItemList.remove(index);
-        assert menuItemList.size() == oldSize - 1;
+        long start = DELETE_MENU_ITEM.start();
+        MenuFlightEvent event = new MenuFlightEvent();
+        event.begin();
+        CommandLog log;
+        long sequence = 0;
+        MenuItem removed;
+        menuLock.writeLock().lock();
+        try {
+            assert (index >= 0) && (index < menuItemList.size());
+            int oldSize = menuItemList.size();
+            removed = menuItemList.remove(index);
+            menuDependencies.unregister(removed);
+            publishMenu();
+            assert menuItemList.size() == oldSize - 1;
+            modificationCount.incrementAndGet();
+            log = journal;
+            if (log != null)
+                sequence = log.logDeleteMenuItem(index);
+        } finally {
+            menuLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        eventBus.publish(new MenuChangedEvent(removed, MenuChangedEvent.DELETED, index));
+        event.end();
+        if (event.shouldCommit())
+            event.commit(MenuFlightEvent.DELETED, removed, index);
+        DELETE_MENU_ITEM.stop(start);
     }
 
     /**
      * Edit the values of a menu item.
+     * Composite items containing the old item are updated to contain the new one
+     * and are repriced, together with the composites that contain them.
      * @pre menuItem != null, index >= 0 && index <= menuItemList.size()
      * @param index index of item to be updated
      * @param menuItem new menu item to replace old one
      */
     @Override
     public void editMenuItem(int index, MenuItem menuItem) {
-        assert (menuItem != null) && (index >= 0) && (index < menuItemList.size());
-        menuItemList.set(index, menuItem);
+        long start = EDIT_MENU_ITEM.start();
+        MenuFlightEvent event = new MenuFlightEvent();
+        event.begin();
+        CommandLog log;
+        long sequence = 0;
+        menuLock.writeLock().lock();
+        try {
+            assert (menuItem != null) && (index >= 0) && (index < menuItemList.size());
+            MenuItem oldItem = menuItemList.set(index, menuItem);
+            menuDependencies.replace(oldItem, menuItem);
+            publishMenu();
+            modificationCount.incrementAndGet();
+            log = journal;
+            if (log != null)
+                sequence = log.logEditMenuItem(index, menuItem);
+        } finally {
+            menuLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        eventBus.publish(new MenuChangedEvent(menuItem, MenuChangedEvent.EDITED, index));
+        event.end();
+        if (event.shouldCommit())
+            event.commit(MenuFlightEvent.EDITED, menuItem, index);
+        EDIT_MENU_ITEM.stop(start);
     }
 
     /**
      * Add a new order and corresponding menu items to the list.
+     * The menu items are copied, so later changes to the given list do not affect the order.
+     * Each line is priced at the current price of its menu item.
+     * The order is submitted to the kitchen, if one is attached, before this returns.
      * @pre order != null, menuItems != null
      * @post orders.size() == orders.size()@pre + 1
      * @param order new order
@@ -92,65 +254,572 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
     @Override
     public void createNewOrder(Order order, List<MenuItem> menuItems) {
         assert (order != null) && (menuItems != null);
-        int oldSize = orders.size();
-        orders.put(order, menuItems);
-        assert orders.size() == oldSize + 1;
-        setChanged();
-        notifyObservers();
+        long start = CREATE_ORDER.start();
+        OrderFlightEvent event = new OrderFlightEvent();
+        event.begin();
+        CommandLog log;
+        long sequence = 0;
+        int lineCount;
+        Kitchen cooks;
+        OrderLines orderLines = null;
+        orderLock.writeLock().lock();
+        try {
+            int oldSize = orders.size();
+            orders.add(order, menuItems, menuVersion);
+            assert orders.size() == oldSize + 1;
+            cooks = kitchen;
+            if (cooks != null)
+                orderLines = orders.getLines(order);
+            lineCount = event.isEnabled() ? orders.getLineCount(order) : 0;
+            modificationCount.incrementAndGet();
+            CommandLog current = log = journal;
+            if (current != null)
+                sequence = logWithMenu(() -> current.logCreateOrder(order, menuItems));
+        } finally {
+            orderLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        if (cooks != null)
+            cooks.submit(order, orderLines);
+        eventBus.publish(new OrderCreatedEvent(order));
+        event.end();
+        if (event.shouldCommit())
+            event.commit(OrderFlightEvent.CREATED, order, lineCount);
+        CREATE_ORDER.stop(start);
     }
 
     /**
      * Computes the cost of an order.
+     * The total is kept up to date as lines are added and removed, so this does not walk the lines.
      * @pre order != null
      * @post @result == @forall k:[0..menuItemList.size()] @menuItem.computePrice() @sum
      * @param order order that needs to have its cost computed
-     * @return double cost of order
+     * @return long cost of order in minor units
      */
     @Override
-    public double computeOrderPrice(Order order) {
+    public long computeOrderPrice(Order order) {
         assert order != null;
-        double buf = 0;
-        for(MenuItem menuItem : orders.get(order))
-            buf += menuItem.computePrice();
-        return buf;
+        long start = COMPUTE_ORDER_PRICE.start();
+        OrderFlightEvent event = new OrderFlightEvent();
+        event.begin();
+        long total;
+        int lineCount;
+        orderLock.readLock().lock();
+        try {
+            total = orders.getTotal(order);
+            lineCount = event.isEnabled() ? orders.getLineCount(order) : 0;
+        } finally {
+            orderLock.readLock().unlock();
+        }
+        event.end();
+        if (event.shouldCommit())
+            event.commit(OrderFlightEvent.PRICED, order, lineCount);
+        COMPUTE_ORDER_PRICE.stop(start);
+        return total;
 
         // Why does this not work?
         //return orders.get(order).stream().mapToDouble(menuItem -> computePrice()).sum();
     }
 
     /**
-     * Generates a bill in a new text file for an order.
+     * Generates a bill for an order, in the bill archive if one is attached, otherwise in a new text file.
      * @pre order != null
      * @param order order to have bill generated
+     * @throws UncheckedIOException if the bill can not be appended to the bill archive
      */
     @Override
     public void generateBill(Order order, int id) {
-        FileWriter.makeBill(order, orders.get(order), id);
+        long start = GENERATE_BILL.start();
+        OrderFlightEvent event = new OrderFlightEvent();
+        event.begin();
+        OrderLines orderLines = getOrderLines(order);
+        BillArchive archive = billArchive;
+        if (archive == null)
+            FileWriter.makeBill(getBillTemplate(), order, orderLines, id);
+        else {
+            try {
+                archive.appendBill(getBillTemplate(), order, orderLines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        event.end();
+        if (event.shouldCommit())
+            event.commit(OrderFlightEvent.BILLED, order, orderLines.size());
+        GENERATE_BILL.stop(start);
     }
 
+    /**
+     * Generates the bills of all open orders in parallel, as done when a shift is closed.
+     * The orders and their lines are copied under the lock, the bills are written without holding it.
+     * @pre workers > 0
+     * @param workers number of worker threads writing bills
+     * @param progress listener notified after each bill from the worker threads, may be null
+     * @return report with the number of bills and the throughput
+     */
+    public BillingReport generateBills(int workers, BillingProgress progress) {
+        assert workers > 0;
+        long start = GENERATE_BILLS.start();
+        List<Order> orderList;
+        List<OrderLines> orderLines;
+        orderLock.readLock().lock();
+        try {
+            orderList = new ArrayList<>(orders.asList());
+            orderLines = orders.copyAllLines();
+        } finally {
+            orderLock.readLock().unlock();
+        }
+        BillingReport report = BillBatchWriter.write(getBillTemplate(), orderList, orderLines, billArchive, workers, progress);
+        GENERATE_BILLS.stop(start);
+        return report;
+    }
+
+    /**
+     * Add a line to an order and update the running totals of the order and its table.
+     * The change is announced with an OrderChangedEvent.
+     * @pre order != null, menuItem != null
+     * @param order existing order
+     * @param menuItem menu item ordered
+     */
+    public void addOrderLine(Order order, MenuItem menuItem) {
+        assert (order != null) && (menuItem != null);
+        long start = ADD_ORDER_LINE.start();
+        CommandLog log;
+        long sequence = 0;
+        orderLock.writeLock().lock();
+        try {
+            orders.addLine(order, menuItem, 1);
+            modificationCount.incrementAndGet();
+            CommandLog current = log = journal;
+            if (current != null)
+                sequence = logWithMenu(() -> current.logAddOrderLine(order, menuItem));
+        } finally {
+            orderLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        eventBus.publish(new OrderChangedEvent(order, new OrderDelta().addLine(menuItem, 1)));
+        ADD_ORDER_LINE.stop(start);
+    }
+
+    /**
+     * Remove a line from an order and update the running totals of the order and its table.
+     * The change is announced with an OrderChangedEvent if the order contained the item.
+     * @pre order != null
+     * @param order existing order
+     * @param menuItem menu item of the line to be removed
+     * @return true if the order contained the item
+     */
+    public boolean removeOrderLine(Order order, MenuItem menuItem) {
+        assert order != null;
+        long start = REMOVE_ORDER_LINE.start();
+        CommandLog log;
+        long sequence = 0;
+        boolean removed;
+        orderLock.writeLock().lock();
+        try {
+            removed = orders.removeLine(order, menuItem, 1);
+            if (removed)
+                modificationCount.incrementAndGet();
+            CommandLog current = log = journal;
+            if (removed && current != null)
+                sequence = logWithMenu(() -> current.logRemoveOrderLine(order, menuItem));
+        } finally {
+            orderLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        if (removed)
+            eventBus.publish(new OrderChangedEvent(order, new OrderDelta().removeLine(menuItem, 1)));
+        REMOVE_ORDER_LINE.stop(start);
+        return removed;
+    }
+
+    /**
+     * Get the running total of the open orders of a table.
+     * @param table table number
+     * @return total in minor units
+     */
+    public long getTableTotal(int table) {
+        orderLock.readLock().lock();
+        try {
+            return orders.getTableTotal(table);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the open orders of a table.
+     * @param table table number
+     * @return copy of the orders of the table, in the order they were added
+     */
+    public List<Order> getOrdersAtTable(int table) {
+        orderLock.readLock().lock();
+        try {
+            return orders.getByTable(table);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the open orders placed in a time range, for example between 19:00 and 20:00.
+     * @param fromTime start of the range in epoch milliseconds, included
+     * @param toTime end of the range in epoch milliseconds, excluded
+     * @return copy of the orders, sorted by time
+     */
+    public List<Order> getOrdersBetween(long fromTime, long toTime) {
+        orderLock.readLock().lock();
+        try {
+            return orders.getBetween(fromTime, toTime);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the open orders with a line of a menu item.
+     * @param menuItem menu item, matched by name so that an edited item finds the orders of the item it replaced
+     * @return copy of the orders
+     */
+    public List<Order> getOrdersContaining(MenuItem menuItem) {
+        orderLock.readLock().lock();
+        try {
+            return orders.getContaining(menuItem);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the menu items of the order at a position.
+     * Only the items whose number of units changed are touched, see editOrder(Order, OrderDelta).
+     * @pre index >= 0 && index < getOrderListSize(), menuItems != null
+     * @param index position of the order
+     * @param order order as entered, the order at the position keeps its id, date and table
+     * @param menuItems menu items of the order after the edit
+     */
     @Override
     public void editOrder(int index, Order order, List<MenuItem> menuItems) {
+        assert menuItems != null;
+        Order edited = getOrder(index);
+        OrderLines orderLines = getOrderLines(edited);
+        if (orderLines != null)
+            editOrder(edited, OrderDelta.between(orderLines, menuItems));
+    }
 
-
+    /**
+     * Edit the lines of an order. The running totals of the order and its table and the indexes are updated
+     * line by line, the edit is logged as one record and announced with a single OrderChangedEvent.
+     * @pre order != null, delta != null
+     * @param order existing order
+     * @param delta line operations, applied all or none
+     * @return true if the edit was applied, false if the order does not exist or has too few units to remove
+     */
+    public boolean editOrder(Order order, OrderDelta delta) {
+        assert (order != null) && (delta != null);
+        if (delta.isEmpty())
+            return true;
+        long start = EDIT_ORDER.start();
+        OrderFlightEvent event = new OrderFlightEvent();
+        event.begin();
+        CommandLog log = null;
+        long sequence = 0;
+        boolean applied;
+        int lineCount;
+        orderLock.writeLock().lock();
+        try {
+            applied = orders.contains(order) && orders.apply(order, delta);
+            if (applied) {
+                modificationCount.incrementAndGet();
+                CommandLog current = log = journal;
+                if (current != null)
+                    sequence = logWithMenu(() -> current.logEditOrder(order, delta));
+            }
+            lineCount = applied && event.isEnabled() ? orders.getLineCount(order) : 0;
+        } finally {
+            orderLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        if (applied)
+            eventBus.publish(new OrderChangedEvent(order, delta));
+        event.end();
+        if (applied && event.shouldCommit())
+            event.commit(OrderFlightEvent.EDITED, order, lineCount);
+        EDIT_ORDER.stop(start);
+        return applied;
     }
 
     @Override
     public void deleteOrder(Order order) {
         assert order != null;
-        orders.remove(order);
+        long start = DELETE_ORDER.start();
+        OrderFlightEvent event = new OrderFlightEvent();
+        event.begin();
+        CommandLog log = null;
+        long sequence = 0;
+        int position;
+        int lineCount;
+        orderLock.writeLock().lock();
+        try {
+            lineCount = event.isEnabled() ? orders.getLineCount(order) : 0;
+            position = orders.remove(order);
+            if (position >= 0) {
+                modificationCount.incrementAndGet();
+                log = journal;
+                if (log != null)
+                    sequence = log.logDeleteOrder(order);
+            }
+        } finally {
+            orderLock.writeLock().unlock();
+        }
+        awaitDurable(log, sequence);
+        if (position >= 0)
+            eventBus.publish(new OrderDeletedEvent(order, position));
+        event.end();
+        if (position >= 0 && event.shouldCommit())
+            event.commit(OrderFlightEvent.DELETED, order, lineCount);
+        DELETE_ORDER.stop(start);
     }
 
     /**
-     * Get a menu item from the list by its name.
+     * Attach an archive that receives the following bills instead of one file per bill.
+     * @param billArchive bill archive or null to write bills to files again
+     */
+    public void setBillArchive(BillArchive billArchive) {
+        this.billArchive = billArchive;
+    }
+
+    public BillArchive getBillArchive() {
+        return billArchive;
+    }
+
+    /**
+     * Set the layout of the following bills.
+     * @param billTemplate compiled layout or null for the default one
+     */
+    public void setBillTemplate(BillTemplate billTemplate) {
+        this.billTemplate = billTemplate;
+    }
+
+    public BillTemplate getBillTemplate() {
+        BillTemplate template = billTemplate;
+        return template == null ? BillTemplate.DEFAULT : template;
+    }
+
+    /**
+     * Attach the kitchen the following new orders are submitted to.
+     * @param kitchen started kitchen or null to stop submitting orders
+     */
+    void setKitchen(Kitchen kitchen) {
+        this.kitchen = kitchen;
+    }
+
+    public Kitchen getKitchen() {
+        return kitchen;
+    }
+
+    /**
+     * Get the bus the events of the restaurant are published on.
+     * @return event bus
+     */
+    public EventBus getEventBus() {
+        return eventBus;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        eventBus = new EventBus();
+        menu = new MenuVersion(menuVersion, menuItemList);
+    }
+
+    // MENU VERSIONS ===================================================================================================
+
+    /**
+     * Build the next version of the menu and publish it, so readers see the edit once the lock is released.
+     * Building a version copies the menu; a menu loaded from storage is added by restoreMenu with one version.
+     * @pre the menu lock is held for writing
+     */
+    private void publishMenu() {
+        menu = new MenuVersion(++menuVersion, menuItemList);
+    }
+
+    /**
+     * Get the current version of the menu. The version stays the same however the menu is edited afterwards,
+     * so it can be read as a whole.
+     * @return current menu version
+     */
+    public MenuVersion getMenu() {
+        return menu;
+    }
+
+    /**
+     * Get the version of the menu an order was placed under.
+     * @param order order
+     * @return menu version, -1 if the order was loaded from storage or does not exist
+     */
+    public long getMenuVersion(Order order) {
+        orderLock.readLock().lock();
+        try {
+            return orders.getMenuVersion(order);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    // JOURNAL =========================================================================================================
+
+    /**
+     * Attach a command log that records every following mutation.
+     * @param journal command log or null to stop journaling
+     */
+    public void setJournal(CommandLog journal) {
+        this.journal = journal;
+    }
+
+    public CommandLog getJournal() {
+        return journal;
+    }
+
+    /**
+     * Get the first generation of the command log that is not part of this object's state.
+     * @return generation to replay from
+     */
+    public long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    /**
+     * Get the number of mutations since the restaurant was created.
+     * @return modification count
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Take a consistent copy of the menu and of the orders with their lines.
+     * The locks are held only while the packed arrays of the order lines are copied, the lines of each
+     * order are built later by whoever reads the snapshot, so order entry does not wait for a save.
+     * Menu edits replace the items of composites, so the items of every composite of the menu or of the
+     * orders are captured under the menu lock too.
+     * The command log, if any, is rolled at the same moment, so the snapshot covers every older generation.
+     * @return snapshot of the restaurant
+     * @throws IOException if the command log can not be flushed
+     */
+    public RestaurantSnapshot snapshot() throws IOException {
+        long start = SNAPSHOT.start();
+        orderLock.readLock().lock();
+        menuLock.readLock().lock();
+        try {
+            CommandLog log = journal;
+            if (log != null)
+                journalGeneration = log.roll();
+            Map<CompositeMenuItem, List<MenuItem>> compositeItems = new IdentityHashMap<>();
+            for (MenuItem menuItem : menuItemList)
+                captureItems(menuItem, compositeItems);
+            orders.forEachItem(menuItem -> captureItems(menuItem, compositeItems));
+            return new RestaurantSnapshot(new ArrayList<>(menuItemList), new ArrayList<>(orders.asList()),
+                    orders.copyAllLines(), compositeItems, journalGeneration, modificationCount.get());
+        } finally {
+            menuLock.readLock().unlock();
+            orderLock.readLock().unlock();
+            SNAPSHOT.stop(start);
+        }
+    }
+
+    /**
+     * Record the items of a composite and of the composites it contains.
+     * @pre the menu lock is held
+     */
+    private static void captureItems(MenuItem menuItem, Map<CompositeMenuItem, List<MenuItem>> compositeItems) {
+        if (!(menuItem instanceof CompositeMenuItem) || compositeItems.containsKey(menuItem))
+            return;
+        List<MenuItem> items = ((CompositeMenuItem) menuItem).getItems();
+        compositeItems.put((CompositeMenuItem) menuItem, items);
+        for (MenuItem m : items)
+            captureItems(m, compositeItems);
+    }
+
+    /**
+     * Add the menu items read back from storage at the end of the menu and publish one version for all of them.
+     * Meant for loading a snapshot, the items are neither logged nor announced to the observers.
+     * @pre menuItems != null
+     * @param menuItems menu items in menu order, the items they contain included
+     */
+    public void restoreMenu(List<MenuItem> menuItems) {
+        assert menuItems != null;
+        menuLock.writeLock().lock();
+        try {
+            for (MenuItem menuItem : menuItems) {
+                menuItemList.add(menuItem);
+                menuDependencies.register(menuItem);
+            }
+            publishMenu();
+        } finally {
+            menuLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add an order read back from storage, keeping the prices of its lines.
+     * Meant for loading a snapshot, the order is neither logged nor announced to the observers.
+     * @pre order != null, orderLines != null
+     * @param order order
+     * @param orderLines lines of the order
+     */
+    public void restoreOrder(Order order, OrderLines orderLines) {
+        assert (order != null) && (orderLines != null);
+        orderLock.writeLock().lock();
+        try {
+            orders.restore(order, orderLines);
+        } finally {
+            orderLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Set the first generation of the command log that is not part of the loaded state.
+     * @param journalGeneration generation
+     */
+    public void setJournalGeneration(long journalGeneration) {
+        this.journalGeneration = journalGeneration;
+    }
+
+    /**
+     * Log a record that refers to menu items by name, while the menu can not change.
+     */
+    private long logWithMenu(LongSupplier logger) {
+        menuLock.readLock().lock();
+        try {
+            return logger.getAsLong();
+        } finally {
+            menuLock.readLock().unlock();
+        }
+    }
+
+    private static void awaitDurable(CommandLog log, long sequence) {
+        if (log != null)
+            log.awaitDurable(sequence);
+    }
+
+    /**
+     * Get a menu item of the current version of the menu by its name.
      * @param s name of the menu item
-     * @return menu item
+     * @return menu item, null if there is none
      */
     public MenuItem getMenuItem(String s) {
-        MenuItem menuItem = null;
-        for (MenuItem m : menuItemList)
-            if (m.getName().equals(s))
-                menuItem = m;
-        return menuItem;
+        return menu.get(s);
+    }
+
+    /**
+     * Find menu items whose name starts with the given text, ignoring case.
+     * Meant for autocompletion of the items ordered by a waiter.
+     * @param prefix start of the name
+     * @param limit maximum number of items returned
+     * @return list of menu items sorted by name
+     */
+    public List<MenuItem> findMenuItems(String prefix, int limit) {
+        return getMenu().findByPrefix(prefix, limit);
     }
 
     /**
@@ -159,7 +828,7 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
      * @return menu item
      */
     public MenuItem getMenuItem(int index){
-        return menuItemList.get(index);
+        return getMenu().get(index);
     }
 
     /**
@@ -168,25 +837,103 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
      * @return order
      */
     public Order getOrder(int index){
-        List keys = new ArrayList(orders.keySet());
-        return (Order) keys.get(index);
+        orderLock.readLock().lock();
+        try {
+            return orders.get(index);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the position of an order, as shown in the waiter table.
+     * @param order order
+     * @return index of the order, -1 if it is not open
+     */
+    public int getOrderIndex(Order order) {
+        orderLock.readLock().lock();
+        try {
+            return orders.indexOf(order);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get an order from the map by its id.
+     * @param orderId id of the order
+     * @return order or null if there is no order with this id
+     */
+    public Order getOrderById(int orderId){
+        orderLock.readLock().lock();
+        try {
+            return orders.getById(orderId);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all orders with an id. Ids are entered by the waiters, so more orders may share one.
+     * @param orderId id of the orders
+     * @return copy of the orders, in the order they were added
+     */
+    public List<Order> getOrdersById(int orderId){
+        orderLock.readLock().lock();
+        try {
+            return orders.getAllById(orderId);
+        } finally {
+            orderLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all orders in the order they were added, for rendering.
+     * @return copy of the list of orders
+     */
+    public List<Order> getOrders(){
+        orderLock.readLock().lock();
+        try {
+            return new ArrayList<>(orders.asList());
+        } finally {
+            orderLock.readLock().unlock();
+        }
     }
 
     /**
      * Get the list of menu items corresponding to an order.
      * @param order key of the map entry.
-     * @return list of menu items
+     * @return copy of the list of menu items
      */
     public List<MenuItem> getMenuItemList(Order order){
-        return orders.get(order);
+        OrderLines orderLines = getOrderLines(order);
+        if (orderLines == null)
+            return null;
+        List<MenuItem> menuItems = new ArrayList<>(orderLines.getUnitCount());
+        orderLines.forEachUnit(menuItems::add);
+        return menuItems;
+    }
+
+    /**
+     * Get the lines of an order with the price of each line and the total.
+     * @param order key of the map entry.
+     * @return copy of the lines or null if there is no such order
+     */
+    public OrderLines getOrderLines(Order order){
+        orderLock.readLock().lock();
+        try {
+            return orders.getLines(order);
+        } finally {
+            orderLock.readLock().unlock();
+        }
     }
 
     /**
      * Get the list of all menu items of the restaurant.
-     * @return list of menu items
+     * @return copy of the list of menu items
      */
     public List<MenuItem> getMenuItemList(){
-        return menuItemList;
+        return new ArrayList<>(getMenu().getItems());
     }
 
     /**
@@ -194,7 +941,7 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
      * @return integer corresponding to the size of the list of menu items
      */
     public int getMenuItemListSize(){
-        return  menuItemList.size();
+        return getMenu().size();
     }
 
     /**
@@ -202,7 +949,12 @@ public class Restaurant extends Observable implements IRestaurantProcessing, Ser
      * @return integer corresponding to the size of the map of orders
      */
     public int getOrderListSize(){
-        return orders.size();
+        orderLock.readLock().lock();
+        try {
+            return orders.size();
+        } finally {
+            orderLock.readLock().unlock();
+        }
     }
 
 }
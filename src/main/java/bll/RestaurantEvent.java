@@ -0,0 +1,21 @@
+package bll;
+
+/**
+ * RestaurantEvent class is the base of the events published by a restaurant after a change.
+ */
+public abstract class RestaurantEvent {
+
+    private final long time;
+
+    protected RestaurantEvent() {
+        this.time = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the moment the event was published.
+     * @return time in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+}
@@ -0,0 +1,17 @@
+package bll;
+
+import java.util.List;
+
+/**
+ * RestaurantListener interface receives the events of a restaurant from the dispatcher thread of its event bus.
+ * Events published in a burst are delivered together, so a listener can update once per burst.
+ */
+public interface RestaurantListener {
+
+    /**
+     * Called with the events published since the previous call, oldest first.
+     * Runs on the dispatcher thread, Swing listeners must hand the work over to the EDT.
+     * @param events read only list of events, never empty
+     */
+    void onEvents(List<RestaurantEvent> events);
+}
@@ -0,0 +1,80 @@
+package bll;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RestaurantSnapshot class is a consistent copy of the state of a restaurant at one moment,
+ * meant to be written to storage while the restaurant keeps taking orders.
+ */
+public class RestaurantSnapshot {
+
+    private final List<MenuItem> menuItems;
+    private final List<Order> orders;
+    private final List<OrderLines> orderLines;
+    private final Map<CompositeMenuItem, List<MenuItem>> compositeItems;
+    private final long journalGeneration;
+    private final long modificationCount;
+
+    RestaurantSnapshot(List<MenuItem> menuItems, List<Order> orders, List<OrderLines> orderLines,
+                       Map<CompositeMenuItem, List<MenuItem>> compositeItems, long journalGeneration,
+                       long modificationCount) {
+        this.menuItems = Collections.unmodifiableList(menuItems);
+        this.orders = Collections.unmodifiableList(orders);
+        this.orderLines = Collections.unmodifiableList(orderLines);
+        this.compositeItems = compositeItems;
+        this.journalGeneration = journalGeneration;
+        this.modificationCount = modificationCount;
+    }
+
+    public List<MenuItem> getMenuItems() {
+        return menuItems;
+    }
+
+    /**
+     * Get the orders in the order they were added.
+     * @return list of orders
+     */
+    public List<Order> getOrders() {
+        return orders;
+    }
+
+    /**
+     * Get the lines of the orders, in the same order as getOrders().
+     * The lines of an order are built from the copied arrays each time they are read.
+     * @return list of order lines
+     */
+    public List<OrderLines> getOrderLines() {
+        return orderLines;
+    }
+
+    /**
+     * Get the items a composite was made of at the moment of the snapshot. Composites are edited in place,
+     * so the items must be read from here rather than from the composite.
+     * @pre the composite is in the menu or in an order of the snapshot
+     * @param composite composite menu item
+     * @return read only list of menu items
+     */
+    public List<MenuItem> getItems(CompositeMenuItem composite) {
+        List<MenuItem> items = compositeItems.get(composite);
+        assert items != null;
+        return items;
+    }
+
+    /**
+     * Get the first generation of the command log that is not part of the snapshot.
+     * @return generation
+     */
+    public long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    /**
+     * Get the modification count of the restaurant at the moment of the snapshot.
+     * @return modification count
+     */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+}
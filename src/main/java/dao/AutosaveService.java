@@ -0,0 +1,94 @@
+package dao;
+
+import bll.Restaurant;
+import bll.RestaurantSnapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AutosaveService class writes snapshots of a restaurant in the background.
+ * A snapshot is written once a given number of changes has accumulated, or once the interval has passed
+ * since the last save and there is at least one change, so at most one interval of work is lost on a crash
+ * (nothing is lost when a command log is attached, the snapshot only bounds the log to replay).
+ * The snapshot is taken under the locks of the restaurant but written on the autosave thread,
+ * so waiters never wait for the disk.
+ */
+public class AutosaveService implements Closeable {
+
+    private final Restaurant restaurant;
+    private final RestaurantSerializator serializator;
+    private final long intervalMillis;
+    private final long changeThreshold;
+    private final ScheduledExecutorService executor;
+
+    private long savedModifications;
+    private long lastSave;
+
+    /**
+     * AutosaveService constructor.
+     * @pre restaurant != null, intervalSeconds > 0, changeThreshold > 0
+     * @param restaurant restaurant to be saved
+     * @param intervalSeconds maximum time between a change and the save that covers it
+     * @param changeThreshold number of changes that trigger a save before the interval is over
+     */
+    public AutosaveService(Restaurant restaurant, int intervalSeconds, int changeThreshold) {
+        assert (restaurant != null) && (intervalSeconds > 0) && (changeThreshold > 0);
+        this.restaurant = restaurant;
+        this.serializator = new RestaurantSerializator(restaurant);
+        this.intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        this.changeThreshold = changeThreshold;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "autosave");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start checking the restaurant for changes.
+     */
+    public void start() {
+        savedModifications = restaurant.getModificationCount();
+        lastSave = System.currentTimeMillis();
+        long period = Math.min(intervalMillis, 500);
+        executor.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Save if enough changes have accumulated or if the oldest unsaved change is about to be too old.
+     */
+    private void check() {
+        long changes = restaurant.getModificationCount() - savedModifications;
+        if (changes == 0)
+            return;
+        if (changes >= changeThreshold || System.currentTimeMillis() - lastSave >= intervalMillis)
+            save();
+    }
+
+    private void save() {
+        try {
+            RestaurantSnapshot snapshot = serializator.writeSnapshot();
+            savedModifications = snapshot.getModificationCount();
+            lastSave = System.currentTimeMillis();
+        } catch (IOException ex) {
+            System.out.println("IOException is caught.");
+        }
+    }
+
+    /**
+     * Stop the autosave thread. A save in progress is completed first.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
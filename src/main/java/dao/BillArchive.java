@@ -0,0 +1,442 @@
+package dao;
+
+import bll.Metrics;
+import bll.OperationTimer;
+import bll.Order;
+import bll.OrderLines;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * BillArchive class keeps the bills of the restaurant in a few append-only segment files instead of
+ * one text file per bill. Each bill is appended as a record (order id, length, text, CRC32) to the
+ * current segment, and its position is appended to an index file of fixed size entries.
+ * The index is held in memory as an open addressing table from order id to position, so a bill is
+ * found with one lookup and read from a memory mapped segment. If an order is billed again the newest
+ * bill wins. A segment is closed once it grows over SEGMENT_SIZE and the archive continues in a new one.
+ * Appends and reads are reported to the flight recorder as StorageFlightEvent.
+ */
+public class BillArchive implements Closeable {
+
+    /**
+     * Size after which the current segment is closed.
+     */
+    public static final long SEGMENT_SIZE = 64L << 20;
+
+    private static final int HEADER = 8;
+    private static final int TRAILER = 4;
+    private static final int INDEX_ENTRY = 16;
+    /**
+     * Growth of the current segment past its mapped part after which it is mapped again.
+     */
+    private static final long REMAP_SIZE = 1L << 20;
+
+    private static final OperationTimer APPEND = Metrics.timer("dao.billArchive.append");
+    private static final OperationTimer READ = Metrics.timer("dao.billArchive.read");
+
+    private final String baseName;
+    private final FileChannel indexChannel;
+    private final List<MappedByteBuffer> maps;
+    private final ByteBuffer header;
+    private final ByteBuffer trailer;
+    private final ByteBuffer entry;
+
+    private int segment;
+    private FileChannel segmentChannel;
+    private long segmentSize;
+
+    private int[] keys;
+    private long[] positions;
+    private boolean[] used;
+    private int size;
+
+    private BillArchive(String baseName) throws IOException {
+        this.baseName = baseName;
+        this.maps = new ArrayList<>();
+        this.header = ByteBuffer.allocate(HEADER);
+        this.trailer = ByteBuffer.allocate(TRAILER);
+        this.entry = ByteBuffer.allocate(INDEX_ENTRY);
+        this.keys = new int[1024];
+        this.positions = new long[1024];
+        this.used = new boolean[1024];
+        this.indexChannel = FileChannel.open(Paths.get(baseName + ".idx"), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Open an archive, creating it if it does not exist.
+     * Index entries that do not point at a whole record, for example written before a crash lost the record,
+     * are cut off, bills appended after the last valid index entry of any segment are indexed again
+     * and a torn record at the end of a segment is cut off.
+     * @param baseName name of the archive files, the segment number is added as extension
+     * @return archive
+     * @throws IOException if the archive can not be read or created
+     */
+    public static BillArchive open(String baseName) throws IOException {
+        BillArchive archive = new BillArchive(baseName);
+        try {
+            archive.load();
+        } catch (IOException e) {
+            archive.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    // WRITING =========================================================================================================
+
+    /**
+     * Render the bill of an order and append it to the archive.
+     * @pre template != null, order != null, orderLines != null
+     * @param template layout of the bill
+     * @param order order
+     * @param orderLines lines of the order
+     * @return number of bytes of the bill text
+     * @throws IOException if the bill can not be written
+     */
+    public int appendBill(BillTemplate template, Order order, OrderLines orderLines) throws IOException {
+        assert (template != null) && (order != null) && (orderLines != null);
+        return append(order.getOrderId(), template.getRenderer().render(order, orderLines));
+    }
+
+    /**
+     * Append an encoded bill to the archive.
+     * @param orderId id of the billed order
+     * @param bill text of the bill in UTF-8, consumed by the append
+     * @return number of bytes of the bill text
+     * @throws IOException if the bill can not be written
+     */
+    public int append(int orderId, ByteBuffer bill) throws IOException {
+        long start = APPEND.start();
+        StorageFlightEvent event = new StorageFlightEvent();
+        event.begin();
+        int length = bill.remaining();
+        CRC32 crc = new CRC32();
+        crc.update(bill.duplicate());
+
+        int number;
+        synchronized (this) {
+            if (segmentSize > 0 && segmentSize + HEADER + length + TRAILER > SEGMENT_SIZE)
+                openSegment(segment + 1);
+            number = segment;
+            long offset = segmentSize;
+            ((Buffer) header).clear();
+            header.putInt(orderId).putInt(length);
+            ((Buffer) header).flip();
+            ((Buffer) trailer).clear();
+            trailer.putInt((int) crc.getValue());
+            ((Buffer) trailer).flip();
+            offset = writeFully(segmentChannel, header, offset);
+            offset = writeFully(segmentChannel, bill, offset);
+            writeFully(segmentChannel, trailer, offset);
+            writeEntry(orderId, segmentSize);
+            segmentSize += HEADER + length + TRAILER;
+        }
+        event.end();
+        if (event.shouldCommit())
+            event.commitArchivedBill(StorageFlightEvent.ARCHIVE_APPEND, segmentPath(number).toString(), length,
+                    orderId);
+        APPEND.stop(start);
+        return length;
+    }
+
+    private void writeEntry(int orderId, long offset) throws IOException {
+        ((Buffer) entry).clear();
+        entry.putInt(orderId).putInt(segment).putLong(offset);
+        ((Buffer) entry).flip();
+        writeFully(indexChannel, entry, indexChannel.size());
+        put(orderId, pack(segment, offset));
+    }
+
+    /**
+     * Force the segment and the index to disk.
+     * @throws IOException if the archive can not be written
+     */
+    public synchronized void flush() throws IOException {
+        segmentChannel.force(false);
+        indexChannel.force(false);
+    }
+
+    // READING =========================================================================================================
+
+    /**
+     * Read the newest bill of an order.
+     * @param orderId id of the order
+     * @return text of the bill or null if the order was never billed
+     * @throws IOException if the segment holding the bill can not be read
+     */
+    public String read(int orderId) throws IOException {
+        long start = READ.start();
+        StorageFlightEvent event = new StorageFlightEvent();
+        event.begin();
+        ByteBuffer record;
+        int number;
+        synchronized (this) {
+            long position = get(orderId);
+            if (position < 0)
+                return null;
+            number = (int) (position >>> 40);
+            record = record(number, position & 0xFFFFFFFFFFL);
+        }
+        int offset = record.position();
+        int length = record.getInt(offset + 4);
+        byte[] text = new byte[length];
+        ((Buffer) record).position(offset + HEADER);
+        record.get(text);
+        event.end();
+        if (event.shouldCommit())
+            event.commitArchivedBill(StorageFlightEvent.ARCHIVE_READ, segmentPath(number).toString(), length,
+                    orderId);
+        READ.stop(start);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tell whether an order was billed.
+     * @param orderId id of the order
+     * @return true if the archive holds a bill of the order
+     */
+    public synchronized boolean contains(int orderId) {
+        return get(orderId) >= 0;
+    }
+
+    /**
+     * Get the number of orders that have a bill in the archive.
+     * @return number of orders
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        maps.clear();
+        if (segmentChannel != null)
+            segmentChannel.close();
+        indexChannel.close();
+    }
+
+    /**
+     * Get a buffer positioned at a record. Closed segments are mapped once. The current segment is mapped again
+     * only once it grew REMAP_SIZE past the mapped part, the records appended meanwhile are read from the channel.
+     */
+    private ByteBuffer record(int number, long offset) throws IOException {
+        while (maps.size() <= number)
+            maps.add(null);
+        MappedByteBuffer map = maps.get(number);
+        if (map == null || !holds(map, offset)) {
+            if (map != null && number == segment && segmentSize - map.limit() < REMAP_SIZE) {
+                ((Buffer) header).clear();
+                readFully(segmentChannel, header, offset);
+                ByteBuffer record = ByteBuffer.allocate(HEADER + header.getInt(4));
+                readFully(segmentChannel, record, offset);
+                ((Buffer) record).flip();
+                return record;
+            }
+            if (number == segment)
+                map = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentSize);
+            else
+                try (FileChannel channel = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                    map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            maps.set(number, map);
+        }
+        ByteBuffer record = map.duplicate();
+        ((Buffer) record).position((int) offset);
+        return record;
+    }
+
+    private static boolean holds(MappedByteBuffer map, long offset) {
+        return offset + HEADER <= map.limit() && offset + HEADER + map.getInt((int) offset + 4) <= map.limit();
+    }
+
+    // RECOVERY ========================================================================================================
+
+    /**
+     * Load the index, keeping only the entries that point at whole records with a valid checksum and that
+     * follow the previous record of their segment, then index the records of every segment that follow
+     * the last valid entry of the segment.
+     */
+    private void load() throws IOException {
+        int newest = 0;
+        while (Files.exists(segmentPath(newest + 1)))
+            newest++;
+        long[] ends = new long[newest + 1];
+
+        ByteBuffer index = ByteBuffer.allocate((int) (indexChannel.size() / INDEX_ENTRY * INDEX_ENTRY));
+        readFully(indexChannel, index, 0);
+        ((Buffer) index).flip();
+        FileChannel[] channels = new FileChannel[newest + 1];
+        long validSize = 0;
+        try {
+            while (index.remaining() >= INDEX_ENTRY) {
+                int orderId = index.getInt();
+                int number = index.getInt();
+                long offset = index.getLong();
+                if (number < 0 || number > newest || offset != ends[number] || !Files.exists(segmentPath(number)))
+                    break;
+                if (channels[number] == null)
+                    channels[number] = FileChannel.open(segmentPath(number), StandardOpenOption.READ);
+                long end = endOfRecord(channels[number], channels[number].size(), offset);
+                if (end < 0 || header.getInt(0) != orderId)
+                    break;
+                put(orderId, pack(number, offset));
+                ends[number] = end;
+                validSize += INDEX_ENTRY;
+            }
+        } finally {
+            for (FileChannel channel : channels)
+                if (channel != null)
+                    channel.close();
+        }
+        indexChannel.truncate(validSize);
+
+        for (int number = 0; number <= newest; number++) {
+            openSegment(number);
+            recover(ends[number]);
+        }
+    }
+
+    /**
+     * Check the record at an offset.
+     * @return offset after the record, or -1 if there is no whole record with a valid checksum, the header of
+     * the record is left in the header buffer
+     */
+    private long endOfRecord(FileChannel channel, long channelSize, long offset) throws IOException {
+        ((Buffer) header).clear();
+        if (offset + HEADER > channelSize || readFully(channel, header, offset) < HEADER)
+            return -1;
+        int length = header.getInt(4);
+        if (length < 0 || offset + HEADER + length + TRAILER > channelSize)
+            return -1;
+        ByteBuffer body = ByteBuffer.allocate(length + TRAILER);
+        readFully(channel, body, offset + HEADER);
+        CRC32 crc = new CRC32();
+        crc.update(body.array(), 0, length);
+        if (body.getInt(length) != (int) crc.getValue())
+            return -1;
+        return offset + HEADER + length + TRAILER;
+    }
+
+    /**
+     * Index the records of the current segment that follow the given offset and cut off a torn record.
+     * The segment is forced before the new index entries are written, so they never point at lost records.
+     */
+    private void recover(long offset) throws IOException {
+        long end = offset;
+        long next;
+        while ((next = endOfRecord(segmentChannel, segmentSize, end)) >= 0)
+            end = next;
+        if (end < segmentSize) {
+            segmentChannel.truncate(end);
+            segmentSize = end;
+        }
+        if (end == offset)
+            return;
+        segmentChannel.force(false);
+        while (offset < end) {
+            ((Buffer) header).clear();
+            readFully(segmentChannel, header, offset);
+            writeEntry(header.getInt(0), offset);
+            offset += HEADER + header.getInt(4) + TRAILER;
+        }
+    }
+
+    private void openSegment(int number) throws IOException {
+        if (segmentChannel != null)
+            segmentChannel.close();
+        segment = number;
+        segmentChannel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentSize = segmentChannel.size();
+    }
+
+    private Path segmentPath(int number) {
+        return Paths.get(baseName + "." + number);
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        return position;
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + read);
+            if (n < 0)
+                break;
+            read += n;
+        }
+        return read;
+    }
+
+    // INDEX ===========================================================================================================
+
+    private static long pack(int number, long offset) {
+        return ((long) number << 40) | offset;
+    }
+
+    /**
+     * Get the packed position of the newest bill of an order.
+     * @return position or -1 if the order has no bill
+     */
+    private long get(int orderId) {
+        int mask = keys.length - 1;
+        for (int i = hash(orderId) & mask; used[i]; i = (i + 1) & mask)
+            if (keys[i] == orderId)
+                return positions[i];
+        return -1;
+    }
+
+    /**
+     * Remember the position of a bill unless the order already has a newer one, that is one further in the archive.
+     */
+    private void put(int orderId, long position) {
+        if ((size + 1) * 4 > keys.length * 3)
+            grow();
+        int mask = keys.length - 1;
+        int i = hash(orderId) & mask;
+        while (used[i] && keys[i] != orderId)
+            i = (i + 1) & mask;
+        if (!used[i]) {
+            used[i] = true;
+            keys[i] = orderId;
+            positions[i] = position;
+            size++;
+        } else if (position > positions[i])
+            positions[i] = position;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldPositions = positions;
+        boolean[] oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        positions = new long[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldUsed[i])
+                put(oldKeys[i], oldPositions[i]);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,91 @@
+package dao;
+
+import bll.Order;
+import bll.OrderLines;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * BillBatchWriter class writes the bills of many orders at once, as needed when a shift is closed.
+ * A fixed number of worker threads take the next order from a shared cursor, render its bill with
+ * their own BillRenderer and write it through a file channel, or append it to a bill archive if one is given.
+ */
+public class BillBatchWriter {
+
+    private BillBatchWriter() {
+    }
+
+    /**
+     * Write a bill for each order, into the archive if there is one, otherwise into a file
+     * named after the id of the order like a single bill.
+     * @pre template != null, orders.size() == orderLines.size(), workers > 0
+     * @param template layout of the bills
+     * @param orders orders to be billed
+     * @param orderLines lines of each order, in the same order
+     * @param archive bill archive, may be null
+     * @param workers number of worker threads
+     * @param progress listener notified after each bill, may be null
+     * @return report of the batch
+     */
+    public static BillingReport write(BillTemplate template, List<Order> orders, List<OrderLines> orderLines, BillArchive archive,
+                                      int workers, BillingProgress progress) {
+        assert (template != null) && (orders.size() == orderLines.size()) && (workers > 0);
+        int total = orders.size();
+        AtomicInteger cursor = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+
+        Runnable worker = () -> {
+            BillRenderer renderer = template.newRenderer();
+            for (int i = cursor.getAndIncrement(); i < total; i = cursor.getAndIncrement()) {
+                Order order = orders.get(i);
+                OrderLines lines = orderLines.get(i);
+                ByteBuffer bill = renderer.render(order, lines);
+                try {
+                    if (archive != null)
+                        bytes.addAndGet(archive.append(order.getOrderId(), bill));
+                    else
+                        bytes.addAndGet(FileWriter.writeBill(bill, FileWriter.billPath(order.getOrderId()),
+                                order, lines.size()));
+                } catch (IOException e) {
+                    failures.incrementAndGet();
+                    System.out.println("IOException is caught.");
+                }
+                int finished = done.incrementAndGet();
+                if (progress != null)
+                    progress.billed(finished, total);
+            }
+        };
+
+        int threads = Math.max(1, Math.min(workers, total));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "bill-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++)
+                futures[t] = pool.submit(worker);
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return new BillingReport(done.get() - failures.get(), failures.get(), bytes.get(), System.nanoTime() - start);
+    }
+}
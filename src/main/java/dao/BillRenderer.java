@@ -0,0 +1,82 @@
+package dao;
+
+import bll.Order;
+import bll.OrderLines;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+
+/**
+ * BillRenderer class renders bills of a template into buffers that are reused from one bill to the next,
+ * so rendering and encoding a bill allocate nothing once the buffers are big enough.
+ * A renderer is not thread safe; the returned buffers are valid until the next bill is rendered.
+ */
+public class BillRenderer {
+
+    private final BillTemplate template;
+    private final Calendar calendar;
+    private final StringBuilder text;
+    private final CharsetEncoder encoder;
+    private char[] chars;
+    private CharBuffer charBuffer;
+    private ByteBuffer bytes;
+
+    BillRenderer(BillTemplate template, Calendar calendar) {
+        this.template = template;
+        this.calendar = calendar;
+        this.text = new StringBuilder(256);
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars = new char[256];
+        this.charBuffer = CharBuffer.wrap(chars);
+        this.bytes = ByteBuffer.allocate(1024);
+    }
+
+    /**
+     * Render the text of a bill.
+     * @pre order != null, orderLines != null
+     * @param order order
+     * @param orderLines lines of the order
+     * @return text of the bill, valid until the next call
+     */
+    public CharSequence renderText(Order order, OrderLines orderLines) {
+        assert (order != null) && (orderLines != null);
+        text.setLength(0);
+        template.render(text, order, orderLines, calendar);
+        return text;
+    }
+
+    /**
+     * Render a bill encoded in UTF-8.
+     * @pre order != null, orderLines != null
+     * @param order order
+     * @param orderLines lines of the order
+     * @return buffer positioned at the start of the bill, valid until the next call
+     */
+    public ByteBuffer render(Order order, OrderLines orderLines) {
+        renderText(order, orderLines);
+        int length = text.length();
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        text.getChars(0, length, chars, 0);
+        ((Buffer) charBuffer).clear();
+        ((Buffer) charBuffer).limit(length);
+        int maxBytes = (int) (length * encoder.maxBytesPerChar());
+        if (maxBytes > bytes.capacity())
+            bytes = ByteBuffer.allocate(Math.max(maxBytes, bytes.capacity() * 2));
+        ((Buffer) bytes).clear();
+        encoder.reset();
+        encoder.encode(charBuffer, bytes, true);
+        encoder.flush(bytes);
+        ((Buffer) bytes).flip();
+        return bytes;
+    }
+}
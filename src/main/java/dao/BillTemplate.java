@@ -0,0 +1,427 @@
+package dao;
+
+import bll.Money;
+import bll.Order;
+import bll.OrderLines;
+
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * BillTemplate class is the layout of a bill compiled into a list of operations.
+ * A layout has a header, a line and a footer section. The line section is repeated once per unit of each
+ * line of the order, or once per line if it shows the quantity. Sections are text with placeholders:
+ * {orderId}, {table}, {date:pattern}, {total} in any section and {item}, {price}, {quantity}, {amount}
+ * in the line section. Date patterns support the letters y, M, d, E, H, h, a, m, s and z like
+ * SimpleDateFormat; text in single quotes is copied as it is. Names of months and days, the zone name
+ * and the decimal separator of prices come from the locale.
+ * The template is parsed once and is immutable; rendering goes through a BillRenderer, which reuses
+ * its buffers so that a bill is rendered without garbage. Each thread keeps one renderer per template.
+ */
+public class BillTemplate {
+
+    /**
+     * Layout of FileWriter.makeBill before templates, the date formatted like Date.toString().
+     * Unlike the bills of that time, the units of an item at one price are listed together, in the order
+     * the item was first ordered, and prices are printed with two decimals.
+     */
+    public static final BillTemplate DEFAULT = compile(
+            "BILL\nOrder ID: {orderId}\nDate: {date:EEE MMM dd HH:mm:ss zzz yyyy}\nTable number: {table}",
+            "\n{item} {price}",
+            "\nTotal cost: {total}",
+            Locale.US, '.', TimeZone.getDefault());
+
+    static final int LITERAL = 0;
+    static final int ORDER_ID = 1;
+    static final int TABLE = 2;
+    static final int DATE = 3;
+    static final int TOTAL = 4;
+    static final int ITEM = 5;
+    static final int PRICE = 6;
+    static final int QUANTITY = 7;
+    static final int AMOUNT = 8;
+
+    static final int YEAR = 0;
+    static final int SHORT_YEAR = 1;
+    static final int MONTH = 2;
+    static final int MONTH_NAME = 3;
+    static final int DAY = 4;
+    static final int DAY_NAME = 5;
+    static final int HOUR = 6;
+    static final int HOUR_12 = 7;
+    static final int AM_PM = 8;
+    static final int MINUTE = 9;
+    static final int SECOND = 10;
+    static final int ZONE = 11;
+    static final int DATE_LITERAL = 12;
+
+    private final Section header;
+    private final Section line;
+    private final Section footer;
+    private final boolean linePerUnit;
+    private final char decimalSeparator;
+    private final TimeZone zone;
+    private final Locale locale;
+    private final String[] shortMonths;
+    private final String[] months;
+    private final String[] shortDays;
+    private final String[] days;
+    private final String[] amPm;
+    private final String standardZone;
+    private final String daylightZone;
+    private final ThreadLocal<BillRenderer> renderers = ThreadLocal.withInitial(this::newRenderer);
+
+    private BillTemplate(Section header, Section line, Section footer, Locale locale, char decimalSeparator,
+                         TimeZone zone) {
+        this.header = header;
+        this.line = line;
+        this.footer = footer;
+        this.linePerUnit = !line.uses(QUANTITY) && !line.uses(AMOUNT);
+        this.decimalSeparator = decimalSeparator;
+        this.zone = (TimeZone) zone.clone();
+        this.locale = locale;
+        DateFormatSymbols symbols = DateFormatSymbols.getInstance(locale);
+        this.shortMonths = symbols.getShortMonths();
+        this.months = symbols.getMonths();
+        this.shortDays = symbols.getShortWeekdays();
+        this.days = symbols.getWeekdays();
+        this.amPm = symbols.getAmPmStrings();
+        this.standardZone = zone.getDisplayName(false, TimeZone.SHORT, locale);
+        this.daylightZone = zone.getDisplayName(true, TimeZone.SHORT, locale);
+    }
+
+    /**
+     * Compile a layout, taking the decimal separator of prices from the locale.
+     * @param header text before the lines
+     * @param line text of a line
+     * @param footer text after the lines
+     * @param locale locale of the names of months, days and time zones and of the decimal separator
+     * @param zone time zone of the date
+     * @return compiled template
+     * @throws IllegalArgumentException if a section has an unknown or unclosed placeholder
+     */
+    public static BillTemplate compile(String header, String line, String footer, Locale locale, TimeZone zone) {
+        return compile(header, line, footer, locale,
+                DecimalFormatSymbols.getInstance(locale).getMonetaryDecimalSeparator(), zone);
+    }
+
+    /**
+     * Compile a layout.
+     * @pre header != null, line != null, footer != null, locale != null, zone != null
+     * @param header text before the lines
+     * @param line text of a line
+     * @param footer text after the lines
+     * @param locale locale of the names of months, days and time zones
+     * @param decimalSeparator separator of the decimals of prices
+     * @param zone time zone of the date
+     * @return compiled template
+     * @throws IllegalArgumentException if a section has an unknown or unclosed placeholder
+     */
+    public static BillTemplate compile(String header, String line, String footer, Locale locale,
+                                       char decimalSeparator, TimeZone zone) {
+        assert (header != null) && (line != null) && (footer != null) && (locale != null) && (zone != null);
+        return new BillTemplate(Section.parse(header, false), Section.parse(line, true),
+                Section.parse(footer, false), locale, decimalSeparator, zone);
+    }
+
+    /**
+     * Create a renderer of this template. A renderer is not thread safe, each thread needs its own.
+     * @return renderer
+     */
+    public BillRenderer newRenderer() {
+        return new BillRenderer(this, Calendar.getInstance(zone, locale));
+    }
+
+    /**
+     * Get the renderer of this template that belongs to the calling thread, created on its first bill.
+     * The buffers it returns are valid until the thread renders the next bill of this template.
+     * @return renderer of the calling thread
+     */
+    public BillRenderer getRenderer() {
+        return renderers.get();
+    }
+
+    // RENDERING =======================================================================================================
+
+    /**
+     * Render a bill into a builder.
+     * @param out builder the bill is appended to
+     * @param order order
+     * @param orderLines lines of the order
+     * @param calendar calendar in the zone of the template, reused between bills
+     */
+    void render(StringBuilder out, Order order, OrderLines orderLines, Calendar calendar) {
+        calendar.setTimeInMillis(order.getTime());
+        header.render(this, out, order, orderLines, -1, calendar);
+        for (int i = 0, n = orderLines.size(); i < n; i++) {
+            if (linePerUnit)
+                for (int unit = 0; unit < orderLines.getQuantity(i); unit++)
+                    line.render(this, out, order, orderLines, i, calendar);
+            else
+                line.render(this, out, order, orderLines, i, calendar);
+        }
+        footer.render(this, out, order, orderLines, -1, calendar);
+    }
+
+    private void appendPrice(StringBuilder out, long minor) {
+        Money.appendTo(out, minor);
+        if (decimalSeparator != '.')
+            out.setCharAt(out.length() - Money.SCALE - 1, decimalSeparator);
+    }
+
+    private void appendDate(StringBuilder out, Section.DatePattern pattern, Calendar calendar) {
+        for (int k = 0; k < pattern.codes.length; k++) {
+            int width = pattern.widths[k];
+            switch (pattern.codes[k]) {
+                case YEAR:
+                    appendPadded(out, calendar.get(Calendar.YEAR), width);
+                    break;
+                case SHORT_YEAR:
+                    appendPadded(out, calendar.get(Calendar.YEAR) % 100, 2);
+                    break;
+                case MONTH:
+                    appendPadded(out, calendar.get(Calendar.MONTH) + 1, width);
+                    break;
+                case MONTH_NAME:
+                    out.append((width > 3 ? months : shortMonths)[calendar.get(Calendar.MONTH)]);
+                    break;
+                case DAY:
+                    appendPadded(out, calendar.get(Calendar.DAY_OF_MONTH), width);
+                    break;
+                case DAY_NAME:
+                    out.append((width > 3 ? days : shortDays)[calendar.get(Calendar.DAY_OF_WEEK)]);
+                    break;
+                case HOUR:
+                    appendPadded(out, calendar.get(Calendar.HOUR_OF_DAY), width);
+                    break;
+                case HOUR_12:
+                    int hour = calendar.get(Calendar.HOUR);
+                    appendPadded(out, hour == 0 ? 12 : hour, width);
+                    break;
+                case AM_PM:
+                    out.append(amPm[calendar.get(Calendar.AM_PM)]);
+                    break;
+                case MINUTE:
+                    appendPadded(out, calendar.get(Calendar.MINUTE), width);
+                    break;
+                case SECOND:
+                    appendPadded(out, calendar.get(Calendar.SECOND), width);
+                    break;
+                case ZONE:
+                    out.append(calendar.get(Calendar.DST_OFFSET) != 0 ? daylightZone : standardZone);
+                    break;
+                default:
+                    out.append(pattern.literals[k]);
+            }
+        }
+    }
+
+    private static void appendPadded(StringBuilder out, int value, int width) {
+        for (int limit = 10, digits = 1; digits < width; digits++, limit *= 10)
+            if (value < limit)
+                out.append('0');
+        out.append(value);
+    }
+
+    /**
+     * Section of a layout compiled into operation codes, with the literal text and date patterns they use.
+     */
+    private static final class Section {
+
+        private final int[] codes;
+        private final String[] literals;
+        private final DatePattern[] dates;
+
+        private Section(int[] codes, String[] literals, DatePattern[] dates) {
+            this.codes = codes;
+            this.literals = literals;
+            this.dates = dates;
+        }
+
+        static Section parse(String text, boolean lineSection) {
+            List<Integer> codes = new ArrayList<>();
+            List<String> literals = new ArrayList<>();
+            List<DatePattern> dates = new ArrayList<>();
+            int i = 0;
+            while (i < text.length()) {
+                int open = text.indexOf('{', i);
+                if (open < 0)
+                    open = text.length();
+                if (open > i) {
+                    codes.add(LITERAL);
+                    literals.add(text.substring(i, open));
+                    dates.add(null);
+                }
+                if (open == text.length())
+                    break;
+                int close = text.indexOf('}', open);
+                if (close < 0)
+                    throw new IllegalArgumentException("Unclosed placeholder in " + text);
+                String name = text.substring(open + 1, close);
+                DatePattern date = null;
+                int code;
+                if (name.startsWith("date:")) {
+                    code = DATE;
+                    date = DatePattern.parse(name.substring(5));
+                } else
+                    code = codeOf(name, lineSection);
+                codes.add(code);
+                literals.add(null);
+                dates.add(date);
+                i = close + 1;
+            }
+            int[] codeArray = new int[codes.size()];
+            for (int k = 0; k < codeArray.length; k++)
+                codeArray[k] = codes.get(k);
+            return new Section(codeArray, literals.toArray(new String[0]), dates.toArray(new DatePattern[0]));
+        }
+
+        private static int codeOf(String name, boolean lineSection) {
+            switch (name) {
+                case "orderId":
+                    return ORDER_ID;
+                case "table":
+                    return TABLE;
+                case "date":
+                    throw new IllegalArgumentException("The date needs a pattern, as in {date:dd.MM.yyyy}");
+                case "total":
+                    return TOTAL;
+            }
+            if (lineSection)
+                switch (name) {
+                    case "item":
+                        return ITEM;
+                    case "price":
+                        return PRICE;
+                    case "quantity":
+                        return QUANTITY;
+                    case "amount":
+                        return AMOUNT;
+                }
+            throw new IllegalArgumentException("Unknown placeholder {" + name + "}");
+        }
+
+        boolean uses(int code) {
+            for (int c : codes)
+                if (c == code)
+                    return true;
+            return false;
+        }
+
+        void render(BillTemplate template, StringBuilder out, Order order, OrderLines orderLines, int index,
+                    Calendar calendar) {
+            for (int k = 0; k < codes.length; k++) {
+                switch (codes[k]) {
+                    case ORDER_ID:
+                        out.append(order.getOrderId());
+                        break;
+                    case TABLE:
+                        out.append(order.getTable());
+                        break;
+                    case DATE:
+                        template.appendDate(out, dates[k], calendar);
+                        break;
+                    case TOTAL:
+                        template.appendPrice(out, orderLines.getTotal());
+                        break;
+                    case ITEM:
+                        out.append(orderLines.getMenuItem(index).getName());
+                        break;
+                    case PRICE:
+                        template.appendPrice(out, orderLines.getPrice(index));
+                        break;
+                    case QUANTITY:
+                        out.append(orderLines.getQuantity(index));
+                        break;
+                    case AMOUNT:
+                        template.appendPrice(out, orderLines.getPrice(index) * orderLines.getQuantity(index));
+                        break;
+                    default:
+                        out.append(literals[k]);
+                }
+            }
+        }
+
+        /**
+         * Date pattern compiled into field codes with their widths.
+         */
+        private static final class DatePattern {
+
+            private final int[] codes;
+            private final int[] widths;
+            private final String[] literals;
+
+            private DatePattern(int[] codes, int[] widths, String[] literals) {
+                this.codes = codes;
+                this.widths = widths;
+                this.literals = literals;
+            }
+
+            static DatePattern parse(String pattern) {
+                List<int[]> fields = new ArrayList<>();
+                List<String> literals = new ArrayList<>();
+                int i = 0;
+                while (i < pattern.length()) {
+                    char c = pattern.charAt(i);
+                    int j = i;
+                    if (c == '\'') {
+                        j = pattern.indexOf('\'', i + 1);
+                        if (j < 0)
+                            throw new IllegalArgumentException("Unclosed quote in " + pattern);
+                        fields.add(new int[]{DATE_LITERAL, 0});
+                        literals.add(pattern.substring(i + 1, j));
+                        i = j + 1;
+                        continue;
+                    }
+                    while (j < pattern.length() && pattern.charAt(j) == c)
+                        j++;
+                    int width = j - i;
+                    int code = fieldOf(c, width);
+                    fields.add(new int[]{code, width});
+                    literals.add(code == DATE_LITERAL ? pattern.substring(i, j) : null);
+                    i = j;
+                }
+                int[] codes = new int[fields.size()];
+                int[] widths = new int[fields.size()];
+                for (int k = 0; k < codes.length; k++) {
+                    codes[k] = fields.get(k)[0];
+                    widths[k] = fields.get(k)[1];
+                }
+                return new DatePattern(codes, widths, literals.toArray(new String[0]));
+            }
+
+            private static int fieldOf(char c, int width) {
+                switch (c) {
+                    case 'y':
+                        return width == 2 ? SHORT_YEAR : YEAR;
+                    case 'M':
+                        return width >= 3 ? MONTH_NAME : MONTH;
+                    case 'd':
+                        return DAY;
+                    case 'E':
+                        return DAY_NAME;
+                    case 'H':
+                        return HOUR;
+                    case 'h':
+                        return HOUR_12;
+                    case 'a':
+                        return AM_PM;
+                    case 'm':
+                        return MINUTE;
+                    case 's':
+                        return SECOND;
+                    case 'z':
+                        return ZONE;
+                }
+                if (Character.isLetter(c))
+                    throw new IllegalArgumentException("Unsupported date field " + c);
+                return DATE_LITERAL;
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package dao;
+
+/**
+ * BillingProgress interface is notified as the bills of a batch are written.
+ * It is called from the worker threads of the batch, so implementations must be thread safe
+ * and should hand the value over to the EDT before touching Swing components.
+ */
+public interface BillingProgress {
+
+    /**
+     * Called after each bill of the batch, written or failed.
+     * @param done number of bills finished so far
+     * @param total number of bills of the batch
+     */
+    void billed(int done, int total);
+}
@@ -0,0 +1,57 @@
+package dao;
+
+/**
+ * BillingReport class holds the outcome of a batch of bills.
+ */
+public class BillingReport {
+
+    private final int bills;
+    private final int failures;
+    private final long bytes;
+    private final long elapsedNanos;
+
+    BillingReport(int bills, int failures, long bytes, long elapsedNanos) {
+        this.bills = bills;
+        this.failures = failures;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Get the number of bills written.
+     * @return number of bills
+     */
+    public int getBills() {
+        return bills;
+    }
+
+    /**
+     * Get the number of bills that could not be written.
+     * @return number of failures
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Get the throughput of the batch.
+     * @return bills written per second
+     */
+    public double getBillsPerSecond() {
+        return elapsedNanos == 0 ? 0 : bills * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d bills (%d failed), %d bytes in %d ms, %.0f bills/s",
+                bills, failures, bytes, elapsedNanos / 1_000_000, getBillsPerSecond());
+    }
+}
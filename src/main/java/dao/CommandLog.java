@@ -0,0 +1,546 @@
+package dao;
+
+import bll.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * CommandLog class is a write ahead log of the mutations of a restaurant.
+ * Every mutation is appended as a small binary record while the restaurant still holds its lock,
+ * so the log has the same order as the changes. A background thread writes the pending records and
+ * forces them to disk in one go (group commit); callers wait only until their own record is durable.
+ * The log is split in generations, one file each. A snapshot of the restaurant remembers the first
+ * generation that is not part of it, and on startup these generations are replayed on top of it.
+ */
+public class CommandLog implements Closeable {
+
+    private static final byte CREATE_MENU_ITEM = 1;
+    private static final byte DELETE_MENU_ITEM = 2;
+    private static final byte EDIT_MENU_ITEM = 3;
+    private static final byte CREATE_ORDER = 4;
+    private static final byte DELETE_ORDER = 5;
+    private static final byte ADD_ORDER_LINE = 6;
+    private static final byte REMOVE_ORDER_LINE = 7;
+    private static final byte EDIT_ORDER = 8;
+
+    private static final byte REF_BY_NAME = 0;
+    private static final byte BASE_ITEM = 1;
+    private static final byte COMPOSITE_ITEM = 2;
+    private static final byte ORDER_ITEM = 3;
+
+    private static final OperationTimer FLUSH = Metrics.timer("dao.commandLog.flush");
+
+    private final Restaurant restaurant;
+    private final String baseName;
+
+    private long generation;
+    private FileChannel channel;
+    private ByteArrayOutputStream pending;
+    private ByteArrayOutputStream spare;
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean flushing;
+    private boolean closed;
+    private final Thread flusher;
+
+    private CommandLog(Restaurant restaurant, String baseName, long generation) throws IOException {
+        this.restaurant = restaurant;
+        this.baseName = baseName;
+        this.generation = generation;
+        this.channel = openChannel(generation);
+        this.pending = new ByteArrayOutputStream(4096);
+        this.spare = new ByteArrayOutputStream(4096);
+        this.flusher = new Thread(this::flushLoop, "command-log-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Replay the generations of the log that are newer than the restaurant snapshot,
+     * then attach a new log to the restaurant that continues in a fresh generation.
+     * @param restaurant restaurant loaded from the last snapshot
+     * @param baseName name of the log files, the generation is added as extension
+     * @return log attached to the restaurant
+     * @throws IOException if the log can not be read or created
+     */
+    public static CommandLog open(Restaurant restaurant, String baseName) throws IOException {
+        TreeMap<Long, Path> generations = listGenerations(baseName);
+        long next = restaurant.getJournalGeneration();
+        for (Map.Entry<Long, Path> entry : generations.tailMap(next, true).entrySet())
+            replay(restaurant, entry.getValue());
+        if (!generations.isEmpty())
+            next = Math.max(next, generations.lastKey() + 1);
+        CommandLog log = new CommandLog(restaurant, baseName, next);
+        restaurant.setJournal(log);
+        return log;
+    }
+
+    // RECORDS =========================================================================================================
+
+    public long logCreateMenuItem(MenuItem menuItem) {
+        return append(out -> {
+            out.writeByte(CREATE_MENU_ITEM);
+            writeItem(out, menuItem);
+        });
+    }
+
+    public long logDeleteMenuItem(int index) {
+        return append(out -> {
+            out.writeByte(DELETE_MENU_ITEM);
+            out.writeInt(index);
+        });
+    }
+
+    public long logEditMenuItem(int index, MenuItem menuItem) {
+        return append(out -> {
+            out.writeByte(EDIT_MENU_ITEM);
+            out.writeInt(index);
+            writeItem(out, menuItem);
+        });
+    }
+
+    public long logCreateOrder(Order order, List<MenuItem> menuItems) {
+        return append(out -> {
+            out.writeByte(CREATE_ORDER);
+            writeOrder(out, order);
+            out.writeInt(menuItems.size());
+            for (MenuItem m : menuItems)
+                writeLineRef(out, m);
+        });
+    }
+
+    public long logDeleteOrder(Order order) {
+        return append(out -> {
+            out.writeByte(DELETE_ORDER);
+            writeOrder(out, order);
+        });
+    }
+
+    public long logAddOrderLine(Order order, MenuItem menuItem) {
+        return append(out -> {
+            out.writeByte(ADD_ORDER_LINE);
+            writeOrder(out, order);
+            writeLineRef(out, menuItem);
+        });
+    }
+
+    public long logRemoveOrderLine(Order order, MenuItem menuItem) {
+        return append(out -> {
+            out.writeByte(REMOVE_ORDER_LINE);
+            writeOrder(out, order);
+            writeLineRef(out, menuItem);
+        });
+    }
+
+    public long logEditOrder(Order order, OrderDelta delta) {
+        return append(out -> {
+            out.writeByte(EDIT_ORDER);
+            writeOrder(out, order);
+            out.writeInt(delta.size());
+            for (int i = 0; i < delta.size(); i++) {
+                out.writeByte(delta.getKind(i));
+                writeLineRef(out, delta.getMenuItem(i));
+                out.writeInt(delta.getQuantity(i));
+            }
+        });
+    }
+
+    // GROUP COMMIT ====================================================================================================
+
+    /**
+     * Wait until a record and every record before it are forced to disk.
+     * @param sequence sequence number returned when the record was logged
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence && failure == null)
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (durableSequence < sequence)
+            throw new UncheckedIOException("Command log could not be written.", failure);
+    }
+
+    /**
+     * Flush the current generation and continue the log in a new one.
+     * Every record logged before this call ends up in the old generation, so the caller must make sure
+     * that no mutation is logged concurrently, for example by holding the read locks of the restaurant.
+     * @return the new generation
+     * @throws IOException if the current generation can not be flushed
+     */
+    public synchronized long roll() throws IOException {
+        boolean interrupted = false;
+        while (flushing)
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure != null)
+            throw failure;
+        if (pending.size() > 0) {
+            write(channel, pending);
+            pending.reset();
+            durableSequence = appendedSequence;
+            notifyAll();
+        }
+        channel.close();
+        generation++;
+        channel = openChannel(generation);
+        return generation;
+    }
+
+    /**
+     * Delete the generations older than the given one, once a snapshot covers them.
+     * @param firstKept first generation that is still needed
+     */
+    public void deleteBefore(long firstKept) {
+        try {
+            for (Path path : listGenerations(baseName).headMap(firstKept, false).values())
+                Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("IOException is caught.");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        synchronized (this) {
+            // closed first, so no record is logged after the last one waited for, even if the wait fails
+            closed = true;
+            sequence = appendedSequence;
+            notifyAll();
+        }
+        try {
+            awaitDurable(sequence);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Encode a record and add it to the pending batch.
+     * The record is framed by its length and followed by its checksum.
+     */
+    private long append(RecordWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, record.length);
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Command log is closed.");
+            writeInt(pending, record.length);
+            pending.write(record, 0, record.length);
+            writeInt(pending, (int) crc.getValue());
+            notifyAll();
+            return ++appendedSequence;
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            FileChannel target;
+            long sequence;
+            synchronized (this) {
+                while (pending.size() == 0 && !closed)
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                if (pending.size() == 0)
+                    return;
+                batch = pending;
+                pending = spare;
+                target = channel;
+                sequence = appendedSequence;
+                flushing = true;
+            }
+            IOException error = null;
+            long start = FLUSH.start();
+            try {
+                write(target, batch);
+            } catch (IOException e) {
+                error = e;
+            }
+            FLUSH.stop(start);
+            batch.reset();
+            synchronized (this) {
+                flushing = false;
+                spare = batch;
+                if (error == null)
+                    durableSequence = sequence;
+                else
+                    failure = error;
+                notifyAll();
+            }
+        }
+    }
+
+    // ENCODING ========================================================================================================
+
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        out.writeInt(order.getOrderId());
+        out.writeLong(order.getTime());
+        out.writeInt(order.getTable());
+    }
+
+    /**
+     * Write a reference to a menu item: its name if looking up the name gives the same item, the item itself otherwise.
+     */
+    private void writeRef(DataOutputStream out, MenuItem menuItem) throws IOException {
+        if (menuItem.getName() != null && restaurant.getMenuItem(menuItem.getName()) == menuItem) {
+            out.writeByte(REF_BY_NAME);
+            out.writeUTF(menuItem.getName());
+        } else
+            writeItem(out, menuItem);
+    }
+
+    /**
+     * Write a reference to the menu item of a line of an order. An item that left the menu is written with its
+     * name and current price before the item itself, so that replay resolves it to the item the order holds:
+     * lines are matched by identity, and a new instance read back would match no line of the order.
+     */
+    private void writeLineRef(DataOutputStream out, MenuItem menuItem) throws IOException {
+        if (menuItem.getName() != null && restaurant.getMenuItem(menuItem.getName()) == menuItem) {
+            out.writeByte(REF_BY_NAME);
+            out.writeUTF(menuItem.getName());
+        } else {
+            out.writeByte(ORDER_ITEM);
+            out.writeUTF(menuItem.getName());
+            out.writeLong(menuItem.computePrice());
+            writeItem(out, menuItem);
+        }
+    }
+
+    private void writeItem(DataOutputStream out, MenuItem menuItem) throws IOException {
+        if (menuItem instanceof CompositeMenuItem) {
+            List<MenuItem> items = ((CompositeMenuItem) menuItem).getItems();
+            out.writeByte(COMPOSITE_ITEM);
+            out.writeUTF(menuItem.getName());
+            out.writeInt(items.size());
+            for (MenuItem m : items)
+                writeRef(out, m);
+        } else {
+            out.writeByte(BASE_ITEM);
+            out.writeUTF(menuItem.getName());
+            out.writeLong(menuItem.getPrice());
+        }
+    }
+
+    private static Order readOrder(DataInputStream in) throws IOException {
+        return new Order(in.readInt(), in.readLong(), in.readInt());
+    }
+
+    /**
+     * Read a reference to the menu item of a line of an order.
+     * An item that left the menu resolves to the item of the order with the same name and price, if there is one.
+     * Replay applies the same edits in the same order, so the item has the price it had when it was logged;
+     * two such items of an order with the same name and price can only differ in identity.
+     * @param candidates items of the order and the items read before from the same record
+     */
+    private static MenuItem readLineRef(DataInputStream in, Restaurant restaurant, List<MenuItem> candidates)
+            throws IOException {
+        in.mark(1);
+        if (in.readByte() != ORDER_ITEM) {
+            in.reset();
+            return readItem(in, restaurant);
+        }
+        String name = in.readUTF();
+        long price = in.readLong();
+        MenuItem menuItem = readItem(in, restaurant);
+        for (MenuItem candidate : candidates)
+            if (name.equals(candidate.getName()) && candidate.computePrice() == price)
+                return candidate;
+        candidates.add(menuItem);
+        return menuItem;
+    }
+
+    /**
+     * Get the items of the lines of an order, the candidates of readLineRef.
+     */
+    private static List<MenuItem> itemsOf(Restaurant restaurant, Order order) {
+        List<MenuItem> items = new ArrayList<>();
+        OrderLines orderLines = restaurant.getOrderLines(order);
+        if (orderLines != null)
+            for (int i = 0; i < orderLines.size(); i++)
+                items.add(orderLines.getMenuItem(i));
+        return items;
+    }
+
+    private static MenuItem readItem(DataInputStream in, Restaurant restaurant) throws IOException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case REF_BY_NAME:
+                return restaurant.getMenuItem(in.readUTF());
+            case BASE_ITEM:
+                return new BaseMenuItem(in.readUTF(), in.readLong());
+            case COMPOSITE_ITEM:
+                String name = in.readUTF();
+                int size = in.readInt();
+                List<MenuItem> items = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                    items.add(readItem(in, restaurant));
+                return new CompositeMenuItem(name, items);
+            default:
+                throw new IOException("Unknown menu item kind " + kind);
+        }
+    }
+
+    // REPLAY ==========================================================================================================
+
+    /**
+     * Apply the records of one generation to a restaurant.
+     * Replay stops at the first incomplete or damaged record, which is what a crash in the middle of a write leaves.
+     */
+    private static void replay(Restaurant restaurant, Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            while (true) {
+                byte[] record;
+                int checksum;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > (1 << 24))
+                        return;
+                    record = new byte[length];
+                    in.readFully(record);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(record, 0, record.length);
+                if ((int) crc.getValue() != checksum)
+                    return;
+                apply(restaurant, new DataInputStream(new ByteArrayInputStream(record)));
+            }
+        }
+    }
+
+    private static void apply(Restaurant restaurant, DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case CREATE_MENU_ITEM:
+                restaurant.createNewMenuItem(readItem(in, restaurant));
+                break;
+            case DELETE_MENU_ITEM:
+                restaurant.deleteMenuItem(in.readInt());
+                break;
+            case EDIT_MENU_ITEM:
+                int index = in.readInt();
+                restaurant.editMenuItem(index, readItem(in, restaurant));
+                break;
+            case CREATE_ORDER:
+                Order order = readOrder(in);
+                int size = in.readInt();
+                List<MenuItem> items = new ArrayList<>(size);
+                List<MenuItem> created = new ArrayList<>();
+                for (int i = 0; i < size; i++)
+                    items.add(readLineRef(in, restaurant, created));
+                restaurant.createNewOrder(order, items);
+                break;
+            case DELETE_ORDER:
+                restaurant.deleteOrder(readOrder(in));
+                break;
+            case ADD_ORDER_LINE:
+                Order added = readOrder(in);
+                restaurant.addOrderLine(added, readLineRef(in, restaurant, itemsOf(restaurant, added)));
+                break;
+            case REMOVE_ORDER_LINE:
+                Order removed = readOrder(in);
+                restaurant.removeOrderLine(removed, readLineRef(in, restaurant, itemsOf(restaurant, removed)));
+                break;
+            case EDIT_ORDER:
+                Order edited = readOrder(in);
+                int operations = in.readInt();
+                OrderDelta delta = new OrderDelta();
+                List<MenuItem> candidates = itemsOf(restaurant, edited);
+                for (int i = 0; i < operations; i++) {
+                    byte kind = in.readByte();
+                    MenuItem menuItem = readLineRef(in, restaurant, candidates);
+                    int quantity = in.readInt();
+                    if (kind == OrderDelta.ADD)
+                        delta.addLine(menuItem, quantity);
+                    else if (kind == OrderDelta.REMOVE)
+                        delta.removeLine(menuItem, quantity);
+                    else
+                        delta.changeQuantity(menuItem, quantity);
+                }
+                restaurant.editOrder(edited, delta);
+                break;
+            default:
+                throw new IOException("Unknown command log record " + type);
+        }
+    }
+
+    // FILES ===========================================================================================================
+
+    private FileChannel openChannel(long generation) throws IOException {
+        return FileChannel.open(Paths.get(baseName + "." + generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static TreeMap<Long, Path> listGenerations(String baseName) throws IOException {
+        Path base = Paths.get(baseName).toAbsolutePath();
+        String prefix = base.getFileName().toString() + ".";
+        TreeMap<Long, Path> generations = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(base.getParent(), prefix + "*")) {
+            for (Path path : stream)
+                try {
+                    generations.put(Long.parseLong(path.getFileName().toString().substring(prefix.length())), path);
+                } catch (NumberFormatException e) {
+                    // not a generation of this log
+                }
+        }
+        return generations;
+    }
+
+    private static void write(FileChannel target, ByteArrayOutputStream batch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        while (buffer.hasRemaining())
+            target.write(buffer);
+        target.force(false);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -1,33 +1,67 @@
 package dao;
 
-import bll.MenuItem;
+import bll.Metrics;
+import bll.OperationTimer;
 import bll.Order;
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import bll.OrderLines;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class FileWriter {
 
-    public static void makeBill(Order order, List<MenuItem> menuItems, int id){
-
-        StringBuilder bill = new StringBuilder();
-        bill.append("BILL\n");
-        bill.append("Order ID: ").append(order.getOrderId());
-        bill.append("\nDate: ").append(order.getDate());
-        bill.append("\nTable number: ").append(order.getTable());
-        menuItems.forEach(menuItem -> bill.append("\n").append(menuItem.getName()).append(" ").append(menuItem.computePrice()));
-        double buf = 0;
-        for(MenuItem m : menuItems)
-            buf += m.computePrice();
-        bill.append("\nTotal cost: ").append(buf);
-
-        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
-                new FileOutputStream("bill" + id + ".txt"), StandardCharsets.UTF_8))) {
-            writer.write(String.valueOf(bill));
+    private static final OperationTimer WRITE = Metrics.timer("dao.bill.write");
+
+    public static void makeBill(Order order, OrderLines orderLines, int id){
+        makeBill(BillTemplate.DEFAULT, order, orderLines, id);
+    }
+
+    /**
+     * Write the bill of an order to its own file, laid out by a template.
+     * @param template layout of the bill
+     * @param order order
+     * @param orderLines lines of the order
+     * @param id id used in the name of the file
+     */
+    public static void makeBill(BillTemplate template, Order order, OrderLines orderLines, int id){
+        try {
+            writeBill(template.getRenderer().render(order, orderLines), billPath(id), order, orderLines.size());
         } catch (IOException e) {
             e.printStackTrace();
         }
+    }
+
+    /**
+     * Write an encoded bill to a file through a channel, replacing the file if it exists.
+     * @param bill encoded bill, consumed by the write
+     * @param path file of the bill
+     * @param order billed order, reported to the flight recorder
+     * @param lineCount number of lines of the order
+     * @return number of bytes written
+     * @throws IOException if the file can not be written
+     */
+    static int writeBill(ByteBuffer bill, Path path, Order order, int lineCount) throws IOException {
+        long start = WRITE.start();
+        StorageFlightEvent event = new StorageFlightEvent();
+        event.begin();
+        int length = bill.remaining();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bill.hasRemaining())
+                channel.write(bill);
+        }
+        event.end();
+        if (event.shouldCommit())
+            event.commitBill(path.toString(), length, order, lineCount);
+        WRITE.stop(start);
+        return length;
+    }
 
+    static Path billPath(int id){
+        return Paths.get("bill" + id + ".txt");
     }
 
 }
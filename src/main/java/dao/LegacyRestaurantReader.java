@@ -0,0 +1,162 @@
+package dao;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.Money;
+import bll.MenuItem;
+import bll.Order;
+import bll.Restaurant;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LegacyRestaurantReader class reads a Restaurant.ser written before orders were kept in an order store and
+ * prices in cents. The classes of that time are read into the private classes below, which have their fields
+ * and serial version ids, and are then converted to a restaurant. Streams of the current classes are read
+ * as they are. The file itself is never written, so it stays readable by the version that wrote it.
+ */
+class LegacyRestaurantReader extends ObjectInputStream {
+
+    /**
+     * Classes standing for the classes of the old form, by the name the old form gives them.
+     */
+    private static final Map<String, Class<?>> LEGACY_CLASSES = new HashMap<>();
+
+    static {
+        LEGACY_CLASSES.put("bll.Restaurant", LegacyRestaurant.class);
+        LEGACY_CLASSES.put("bll.Order", LegacyOrder.class);
+        LEGACY_CLASSES.put("bll.MenuItem", LegacyMenuItem.class);
+        LEGACY_CLASSES.put("bll.BaseMenuItem", LegacyBaseMenuItem.class);
+        LEGACY_CLASSES.put("bll.CompositeMenuItem", LegacyCompositeMenuItem.class);
+    }
+
+    private LegacyRestaurantReader(InputStream in) throws IOException {
+        super(in);
+    }
+
+    /**
+     * Read a restaurant in the old or in the current Java serialization form.
+     * @pre in != null
+     * @param in stream positioned at the start of the serialized restaurant
+     * @return restaurant
+     * @throws IOException if the stream holds neither form
+     */
+    static Restaurant read(InputStream in) throws IOException {
+        assert in != null;
+        Object read;
+        try (LegacyRestaurantReader reader = new LegacyRestaurantReader(in)) {
+            read = reader.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new InvalidClassException(e.getMessage());
+        }
+        if (read instanceof Restaurant)
+            return (Restaurant) read;
+        if (read instanceof LegacyRestaurant)
+            return ((LegacyRestaurant) read).toRestaurant();
+        throw new InvalidClassException(read == null ? "null" : read.getClass().getName(), "Not a restaurant");
+    }
+
+    /**
+     * Read the descriptor of a class of the stream, replacing the classes of the old form by the legacy classes
+     * with the same fields. A class is of the old form if its serial version id is the one of the legacy class.
+     */
+    @Override
+    protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+        ObjectStreamClass descriptor = super.readClassDescriptor();
+        Class<?> legacyClass = LEGACY_CLASSES.get(descriptor.getName());
+        if (legacyClass != null) {
+            ObjectStreamClass legacy = ObjectStreamClass.lookup(legacyClass);
+            if (legacy.getSerialVersionUID() == descriptor.getSerialVersionUID())
+                return legacy;
+        }
+        return descriptor;
+    }
+
+    // LEGACY CLASSES ==================================================================================================
+
+    private static final class LegacyRestaurant implements Serializable {
+        private static final long serialVersionUID = 1779046693535038043L;
+
+        private List<Object> menuItemList;
+        private Map<Object, List<Object>> orders;
+
+        /**
+         * Convert to a restaurant. Items shared by the menu, composites and orders stay shared, and prices
+         * are rounded to cents.
+         */
+        Restaurant toRestaurant() throws InvalidClassException {
+            Map<LegacyMenuItem, MenuItem> converted = new IdentityHashMap<>();
+            Restaurant restaurant = new Restaurant();
+            List<MenuItem> menu = new ArrayList<>(menuItemList.size());
+            for (Object menuItem : menuItemList)
+                menu.add(convert(menuItem, converted));
+            restaurant.restoreMenu(menu);
+            for (Map.Entry<Object, List<Object>> entry : orders.entrySet()) {
+                if (!(entry.getKey() instanceof LegacyOrder))
+                    throw new InvalidClassException(String.valueOf(entry.getKey()), "Not an order");
+                LegacyOrder order = (LegacyOrder) entry.getKey();
+                List<MenuItem> items = new ArrayList<>(entry.getValue().size());
+                for (Object menuItem : entry.getValue())
+                    items.add(convert(menuItem, converted));
+                restaurant.createNewOrder(new Order(order.orderId, order.date, order.table), items);
+            }
+            return restaurant;
+        }
+
+        private static MenuItem convert(Object menuItem, Map<LegacyMenuItem, MenuItem> converted)
+                throws InvalidClassException {
+            if (!(menuItem instanceof LegacyMenuItem))
+                throw new InvalidClassException(String.valueOf(menuItem), "Not a menu item");
+            LegacyMenuItem legacy = (LegacyMenuItem) menuItem;
+            MenuItem current = converted.get(legacy);
+            if (current != null)
+                return current;
+            if (legacy instanceof LegacyCompositeMenuItem) {
+                List<Object> legacyItems = ((LegacyCompositeMenuItem) legacy).items;
+                List<MenuItem> items = new ArrayList<>(legacyItems.size());
+                for (Object item : legacyItems)
+                    items.add(convert(item, converted));
+                current = new CompositeMenuItem(legacy.name, items);
+            } else
+                current = new BaseMenuItem(legacy.name, Money.parse(Double.toString(legacy.price)));
+            converted.put(legacy, current);
+            return current;
+        }
+    }
+
+    private static final class LegacyOrder implements Serializable {
+        private static final long serialVersionUID = -3567600094798138586L;
+
+        private int orderId;
+        private Date date;
+        private int table;
+    }
+
+    private abstract static class LegacyMenuItem implements Serializable {
+        private static final long serialVersionUID = -3270987380476486638L;
+
+        private String name;
+        private double price;
+    }
+
+    private static final class LegacyBaseMenuItem extends LegacyMenuItem {
+        private static final long serialVersionUID = 7665740293273149001L;
+    }
+
+    private static final class LegacyCompositeMenuItem extends LegacyMenuItem {
+        private static final long serialVersionUID = -3375893337605234818L;
+
+        private List<Object> items;
+    }
+}
@@ -0,0 +1,29 @@
+package dao;
+
+import bll.MetricsSnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class MetricsFile {
+
+    /**
+     * File the metrics are written to when the application is closed.
+     */
+    public static final String METRICS_FILE = "Restaurant.metrics.csv";
+
+    private MetricsFile() {
+    }
+
+    /**
+     * Write a metrics snapshot as comma separated values, replacing the file if it exists.
+     * @param snapshot metrics snapshot
+     * @param filename name of the file
+     * @throws IOException if the file can not be written
+     */
+    public static void write(MetricsSnapshot snapshot, String filename) throws IOException {
+        Files.write(Paths.get(filename), snapshot.toCsv().getBytes(StandardCharsets.UTF_8));
+    }
+}
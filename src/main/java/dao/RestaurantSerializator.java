@@ -1,51 +1,123 @@
 package dao;
 
+import bll.Metrics;
+import bll.OperationTimer;
 import bll.Restaurant;
+import bll.RestaurantSnapshot;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
 
 public class RestaurantSerializator {
 
+    /**
+     * File holding the binary snapshot of the restaurant.
+     */
+    public static final String SNAPSHOT_FILE = "Restaurant.snap";
+    /**
+     * File written by the older Java serialization format, still read when there is no snapshot.
+     */
+    public static final String SERIALIZED_FILE = "Restaurant.ser";
+
+    /**
+     * Lock serializing the writers of the snapshot file, the autosave thread and the window close handler.
+     */
+    private static final Object WRITE_LOCK = new Object();
+
+    private static final OperationTimer WRITE = Metrics.timer("dao.snapshot.write");
+    private static final OperationTimer READ = Metrics.timer("dao.snapshot.read");
+
     private Restaurant restaurant;
 
     public RestaurantSerializator(Restaurant restaurant){
         this.restaurant = restaurant;
     }
 
+    /**
+     * Write the restaurant to the binary snapshot file.
+     * If a command log is attached it is rolled at the moment of the snapshot, and the generations
+     * covered by the new snapshot are deleted once the snapshot is safely in place.
+     */
     public void serialize(){
         try {
-            FileOutputStream file = new FileOutputStream("Restaurant.ser");
-            ObjectOutputStream out = new ObjectOutputStream(file);
-
-            out.writeObject(restaurant);
-
-            out.close();
-            file.close();
-
+            writeSnapshot();
             System.out.println("Object has been serialized.");
         } catch (IOException ex) {
             System.out.println("IOException is caught.");
         }
     }
 
-    public Restaurant deserialize(String filename){
-        try {
-            FileInputStream file = new FileInputStream(filename);
-            ObjectInputStream in = new ObjectInputStream(file);
+    /**
+     * Take a snapshot of the restaurant and write it to the binary snapshot file.
+     * The restaurant is locked only while the snapshot is taken, not while it is written.
+     * @return the snapshot that was written
+     * @throws IOException if the snapshot can not be written
+     */
+    public RestaurantSnapshot writeSnapshot() throws IOException {
+        synchronized (WRITE_LOCK) {
+            long start = WRITE.start();
+            StorageFlightEvent event = new StorageFlightEvent();
+            event.begin();
+            RestaurantSnapshot snapshot = restaurant.snapshot();
+            SnapshotFile.write(snapshot, SNAPSHOT_FILE);
 
-            restaurant = (Restaurant) in.readObject();
+            CommandLog journal = restaurant.getJournal();
+            if (journal != null)
+                journal.deleteBefore(snapshot.getJournalGeneration());
+            event.end();
+            if (event.shouldCommit())
+                event.commitSnapshot(StorageFlightEvent.SNAPSHOT_WRITE, SNAPSHOT_FILE,
+                        Files.size(Paths.get(SNAPSHOT_FILE)), snapshot.getOrders().size());
+            WRITE.stop(start);
+            return snapshot;
+        }
+    }
 
-            in.close();
-            file.close();
+    /**
+     * Read the restaurant from the snapshot file if there is one, otherwise from the serialized file.
+     * A file that exists but can not be read is reported instead of being taken for an empty restaurant,
+     * so that the next save does not replace the data it holds.
+     * @return restaurant or null if neither file exists
+     * @throws IOException if the file exists but can not be read
+     */
+    public Restaurant deserialize() throws IOException {
+        if (Files.exists(Paths.get(SNAPSHOT_FILE)))
+            return deserialize(SNAPSHOT_FILE);
+        if (Files.exists(Paths.get(SERIALIZED_FILE)))
+            return deserialize(SERIALIZED_FILE);
+        return null;
+    }
 
+    /**
+     * Read a restaurant from a file in either the binary snapshot format or the Java serialization format.
+     * The Java serialization form written before the order store and the prices in cents is converted;
+     * the file is left as it is.
+     * @param filename name of the file
+     * @return restaurant
+     * @throws IOException if the file can not be read
+     */
+    public Restaurant deserialize(String filename) throws IOException {
+        if (SnapshotFile.isSnapshot(filename)) {
+            long start = READ.start();
+            StorageFlightEvent event = new StorageFlightEvent();
+            event.begin();
+            restaurant = SnapshotFile.read(filename, ForkJoinPool.commonPool());
+            event.end();
+            if (event.shouldCommit())
+                event.commitSnapshot(StorageFlightEvent.SNAPSHOT_READ, filename,
+                        Files.size(Paths.get(filename)), restaurant.getOrderListSize());
+            READ.stop(start);
             System.out.println("Object has been deserialized.");
             return restaurant;
-        } catch(IOException ex) {
-            System.out.println("IOException is caught.");
-        } catch(ClassNotFoundException ex) {
-            System.out.println("ClassNotFoundException is caught.");
         }
-        return null;
+        try (InputStream file = new BufferedInputStream(new FileInputStream(filename))) {
+            restaurant = LegacyRestaurantReader.read(file);
+        } catch (IOException ex) {
+            throw new IOException("The restaurant in " + filename + " can not be read", ex);
+        }
+        System.out.println("Object has been deserialized.");
+        return restaurant;
     }
 
 }
-
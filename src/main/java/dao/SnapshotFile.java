@@ -0,0 +1,382 @@
+package dao;
+
+import bll.*;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * SnapshotFile class reads and writes restaurants in a compact, versioned binary format.
+ * The file starts with a header, followed by one menu segment and by order segments of at most
+ * ORDERS_PER_SEGMENT orders each. Every segment carries its length and a checksum, so the reader
+ * can locate all segments without decoding them, load the menu first and then decode the order
+ * segments in parallel straight from the memory mapped file.
+ */
+public class SnapshotFile {
+
+    public static final int MAGIC = 0x52534E50;
+    public static final short VERSION = 1;
+    public static final int ORDERS_PER_SEGMENT = 1 << 16;
+
+    private static final byte MENU_SEGMENT = 1;
+    private static final byte ORDER_SEGMENT = 2;
+
+    private static final byte BASE_ITEM = 1;
+    private static final byte COMPOSITE_ITEM = 2;
+
+    /**
+     * Size of the fixed part of a segment: kind, record count, length and checksum.
+     */
+    private static final int SEGMENT_HEADER = 1 + 4 + 4 + 8;
+
+    private SnapshotFile() {
+    }
+
+    // WRITING =========================================================================================================
+
+    /**
+     * Write a snapshot to a file. The file is written under a temporary name and moved in place when complete.
+     * @param snapshot consistent copy of a restaurant
+     * @param filename name of the file
+     * @throws IOException if the file can not be written
+     */
+    public static void write(RestaurantSnapshot snapshot, String filename) throws IOException {
+        Path target = Paths.get(filename);
+        Path temporary = Paths.get(filename + ".tmp");
+        Map<MenuItem, Integer> itemIndexes = new IdentityHashMap<>();
+        List<MenuItem> itemTable = new ArrayList<>();
+        for (MenuItem m : snapshot.getMenuItems())
+            indexItem(snapshot, m, itemIndexes, itemTable);
+        for (OrderLines lines : snapshot.getOrderLines())
+            for (int i = 0; i < lines.size(); i++)
+                indexItem(snapshot, lines.getMenuItem(i), itemIndexes, itemTable);
+
+        List<Order> orders = snapshot.getOrders();
+        int orderSegments = (orders.size() + ORDERS_PER_SEGMENT - 1) / ORDERS_PER_SEGMENT;
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(snapshot.getJournalGeneration());
+            out.writeInt(1 + orderSegments);
+
+            ByteArrayOutputStream segment = new ByteArrayOutputStream(1 << 16);
+            DataOutputStream payload = new DataOutputStream(segment);
+            payload.writeInt(itemTable.size());
+            for (MenuItem m : itemTable)
+                writeItem(payload, snapshot, m, itemIndexes);
+            payload.writeInt(snapshot.getMenuItems().size());
+            for (MenuItem m : snapshot.getMenuItems())
+                payload.writeInt(itemIndexes.get(m));
+            writeSegment(out, MENU_SEGMENT, snapshot.getMenuItems().size(), segment);
+
+            for (int s = 0; s < orderSegments; s++) {
+                segment.reset();
+                int from = s * ORDERS_PER_SEGMENT;
+                int to = Math.min(from + ORDERS_PER_SEGMENT, orders.size());
+                for (int k = from; k < to; k++) {
+                    Order order = orders.get(k);
+                    OrderLines lines = snapshot.getOrderLines().get(k);
+                    payload.writeInt(order.getOrderId());
+                    payload.writeLong(order.getTime());
+                    payload.writeInt(order.getTable());
+                    payload.writeInt(lines.size());
+                    for (int i = 0; i < lines.size(); i++) {
+                        payload.writeInt(itemIndexes.get(lines.getMenuItem(i)));
+                        payload.writeInt(lines.getQuantity(i));
+                        payload.writeLong(lines.getPrice(i));
+                    }
+                }
+                writeSegment(out, ORDER_SEGMENT, to - from, segment);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Give an index to an item after the items it is made of, so the table can be decoded in one pass.
+     * The items of composites are the ones captured by the snapshot.
+     */
+    private static void indexItem(RestaurantSnapshot snapshot, MenuItem menuItem, Map<MenuItem, Integer> itemIndexes,
+                                  List<MenuItem> itemTable) {
+        if (itemIndexes.containsKey(menuItem))
+            return;
+        if (menuItem instanceof CompositeMenuItem)
+            for (MenuItem m : snapshot.getItems((CompositeMenuItem) menuItem))
+                indexItem(snapshot, m, itemIndexes, itemTable);
+        itemIndexes.put(menuItem, itemTable.size());
+        itemTable.add(menuItem);
+    }
+
+    private static void writeItem(DataOutputStream out, RestaurantSnapshot snapshot, MenuItem menuItem,
+                                  Map<MenuItem, Integer> itemIndexes) throws IOException {
+        if (menuItem instanceof CompositeMenuItem) {
+            List<MenuItem> items = snapshot.getItems((CompositeMenuItem) menuItem);
+            out.writeByte(COMPOSITE_ITEM);
+            writeString(out, menuItem.getName());
+            out.writeInt(items.size());
+            for (MenuItem m : items)
+                out.writeInt(itemIndexes.get(m));
+        } else {
+            out.writeByte(BASE_ITEM);
+            writeString(out, menuItem.getName());
+            out.writeLong(menuItem.getPrice());
+        }
+    }
+
+    private static void writeSegment(DataOutputStream out, byte kind, int records, ByteArrayOutputStream segment) throws IOException {
+        byte[] bytes = segment.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        out.writeByte(kind);
+        out.writeInt(records);
+        out.writeInt(bytes.length);
+        out.writeLong(crc.getValue());
+        out.write(bytes);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // READING =========================================================================================================
+
+    /**
+     * Check whether a file starts with the header of this format.
+     * @param filename name of the file
+     * @return true if the file is a snapshot file
+     */
+    public static boolean isSnapshot(String filename) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Open a snapshot file and locate its segments. Nothing is decoded yet.
+     * @param filename name of the file
+     * @return reader of the file
+     * @throws IOException if the file can not be read or has an unknown format
+     */
+    public static Reader open(String filename) throws IOException {
+        return new Reader(filename);
+    }
+
+    /**
+     * Read a whole snapshot: the menu first, then the order segments decoded in parallel.
+     * @param filename name of the file
+     * @param executor executor decoding the order segments
+     * @return restaurant
+     * @throws IOException if the file can not be read or is damaged
+     */
+    public static Restaurant read(String filename, Executor executor) throws IOException {
+        Reader reader = open(filename);
+        Restaurant restaurant = reader.readMenu();
+        reader.readOrders(restaurant, executor);
+        return restaurant;
+    }
+
+    /**
+     * Reader of an open snapshot file.
+     */
+    public static class Reader {
+
+        private final String filename;
+        private final MappedByteBuffer buffer;
+        private final long journalGeneration;
+        private final List<Segment> segments;
+        private MenuItem[] itemTable;
+
+        private Reader(String filename) throws IOException {
+            this.filename = filename;
+            try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            try {
+                if (buffer.getInt() != MAGIC)
+                    throw new IOException("Not a restaurant snapshot: " + filename);
+                short version = buffer.getShort();
+                if (version != VERSION)
+                    throw new IOException("Unsupported snapshot version " + version);
+                journalGeneration = buffer.getLong();
+                int count = buffer.getInt();
+                segments = new ArrayList<>(count);
+                int position = buffer.position();
+                for (int i = 0; i < count; i++) {
+                    byte kind = buffer.get(position);
+                    int records = buffer.getInt(position + 1);
+                    int length = buffer.getInt(position + 5);
+                    long checksum = buffer.getLong(position + 9);
+                    if (length < 0 || position + SEGMENT_HEADER + length > buffer.limit())
+                        throw new IOException("Snapshot is truncated: " + filename);
+                    segments.add(new Segment(kind, records, position + SEGMENT_HEADER, length, checksum));
+                    position += SEGMENT_HEADER + length;
+                }
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Snapshot is truncated: " + filename, e);
+            }
+            if (segments.isEmpty() || segments.get(0).kind != MENU_SEGMENT)
+                throw new IOException("Snapshot has no menu: " + filename);
+        }
+
+        /**
+         * Decode the menu segment into a new restaurant without orders.
+         * @return restaurant with the menu of the snapshot
+         * @throws IOException if the segment is damaged
+         */
+        public Restaurant readMenu() throws IOException {
+            ByteBuffer in = segments.get(0).payload(buffer);
+            int size = in.getInt();
+            itemTable = new MenuItem[size];
+            for (int i = 0; i < size; i++) {
+                byte kind = in.get();
+                String name = readString(in);
+                if (kind == BASE_ITEM)
+                    itemTable[i] = new BaseMenuItem(name, in.getLong());
+                else if (kind == COMPOSITE_ITEM) {
+                    int n = in.getInt();
+                    List<MenuItem> items = new ArrayList<>(n);
+                    for (int k = 0; k < n; k++)
+                        items.add(itemTable[in.getInt()]);
+                    itemTable[i] = new CompositeMenuItem(name, items);
+                } else
+                    throw new IOException("Unknown menu item kind " + kind);
+            }
+            Restaurant restaurant = new Restaurant();
+            int menuSize = in.getInt();
+            List<MenuItem> menu = new ArrayList<>(menuSize);
+            for (int i = 0; i < menuSize; i++)
+                menu.add(itemTable[in.getInt()]);
+            restaurant.restoreMenu(menu);
+            restaurant.setJournalGeneration(journalGeneration);
+            return restaurant;
+        }
+
+        /**
+         * Decode the order segments in parallel and add the orders to the restaurant in their original order.
+         * Whatever makes a segment fail to decode is reported as an IOException naming the snapshot file.
+         * @pre readMenu() was called
+         * @param restaurant restaurant returned by readMenu()
+         * @param executor executor decoding the segments
+         * @throws IOException if a segment is damaged
+         */
+        public void readOrders(Restaurant restaurant, Executor executor) throws IOException {
+            assert itemTable != null;
+            List<CompletableFuture<DecodedOrders>> decoded = new ArrayList<>();
+            for (Segment segment : segments.subList(1, segments.size()))
+                decoded.add(CompletableFuture.supplyAsync(() -> decodeOrders(segment), executor));
+            try {
+                for (CompletableFuture<DecodedOrders> future : decoded) {
+                    DecodedOrders part = future.join();
+                    for (int i = 0; i < part.orders.length; i++)
+                        restaurant.restoreOrder(part.orders[i], part.lines[i]);
+                }
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException)
+                    cause = cause.getCause();
+                throw new IOException("Snapshot is damaged: " + filename, cause);
+            }
+        }
+
+        private DecodedOrders decodeOrders(Segment segment) {
+            try {
+                if (segment.kind != ORDER_SEGMENT)
+                    throw new IOException("Unexpected snapshot segment " + segment.kind);
+                ByteBuffer in = segment.payload(buffer);
+                DecodedOrders part = new DecodedOrders(segment.records);
+                for (int k = 0; k < segment.records; k++) {
+                    part.orders[k] = new Order(in.getInt(), in.getLong(), in.getInt());
+                    int n = in.getInt();
+                    MenuItem[] items = new MenuItem[n];
+                    int[] quantities = new int[n];
+                    long[] prices = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        items[i] = itemTable[in.getInt()];
+                        quantities[i] = in.getInt();
+                        prices[i] = in.getLong();
+                    }
+                    part.lines[k] = new OrderLines(items, quantities, prices);
+                }
+                return part;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Location of a segment in the file.
+     */
+    private static final class Segment {
+
+        private final byte kind;
+        private final int records;
+        private final int offset;
+        private final int length;
+        private final long checksum;
+
+        private Segment(byte kind, int records, int offset, int length, long checksum) {
+            this.kind = kind;
+            this.records = records;
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Get the payload of the segment after verifying its checksum.
+         */
+        private ByteBuffer payload(MappedByteBuffer buffer) throws IOException {
+            ByteBuffer payload = buffer.duplicate();
+            ((Buffer) payload).position(offset);
+            ((Buffer) payload).limit(offset + length);
+            payload = payload.slice();
+            ByteBuffer view = payload.duplicate();
+            CRC32 crc = new CRC32();
+            byte[] chunk = new byte[8192];
+            while (view.hasRemaining()) {
+                int n = Math.min(chunk.length, view.remaining());
+                view.get(chunk, 0, n);
+                crc.update(chunk, 0, n);
+            }
+            if (crc.getValue() != checksum)
+                throw new IOException("Snapshot segment is damaged.");
+            return payload;
+        }
+    }
+
+    private static final class DecodedOrders {
+
+        private final Order[] orders;
+        private final OrderLines[] lines;
+
+        private DecodedOrders(int size) {
+            this.orders = new Order[size];
+            this.lines = new OrderLines[size];
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package dao;
+
+import bll.Order;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * StorageFlightEvent class is the Flight Recorder event of a snapshot or bill written or read.
+ * Bill events carry the order the bill belongs to, snapshot events the number of orders they hold.
+ * Bills appended to or read from a BillArchive carry only the order id, the path is the segment file.
+ * The file I/O events of the JDK recorded in the same window show the underlying reads and writes.
+ */
+@Name("restaurant.Storage")
+@Label("Storage I/O")
+@Category({"Restaurant", "Storage"})
+@Description("Snapshot or bill written or read")
+@StackTrace(false)
+public class StorageFlightEvent extends Event {
+
+    static final String SNAPSHOT_WRITE = "snapshot write";
+    static final String SNAPSHOT_READ = "snapshot read";
+    static final String BILL_WRITE = "bill write";
+    static final String ARCHIVE_APPEND = "archive append";
+    static final String ARCHIVE_READ = "archive read";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Path")
+    String path;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Orders")
+    @Description("Number of orders in the snapshot, 1 for a bill")
+    int orders;
+
+    @Label("Order Id")
+    @Description("Order of the bill, 0 for a snapshot")
+    int orderId;
+
+    @Label("Table")
+    int table;
+
+    @Label("Lines")
+    @Description("Number of lines of the billed order")
+    int lineCount;
+
+    /**
+     * Fill in a snapshot and commit the event.
+     * @param operation SNAPSHOT_WRITE or SNAPSHOT_READ
+     * @param path file of the snapshot
+     * @param bytes size of the file
+     * @param orders number of orders in the snapshot
+     */
+    void commitSnapshot(String operation, String path, long bytes, int orders) {
+        this.operation = operation;
+        this.path = path;
+        this.bytes = bytes;
+        this.orders = orders;
+        commit();
+    }
+
+    /**
+     * Fill in a bill and commit the event.
+     * @param path file of the bill
+     * @param bytes length of the bill
+     * @param order billed order
+     * @param lineCount number of lines of the order
+     */
+    void commitBill(String path, long bytes, Order order, int lineCount) {
+        this.operation = BILL_WRITE;
+        this.path = path;
+        this.bytes = bytes;
+        this.orders = 1;
+        this.orderId = order.getOrderId();
+        this.table = order.getTable();
+        this.lineCount = lineCount;
+        commit();
+    }
+
+    /**
+     * Fill in a bill of the bill archive and commit the event.
+     * @param operation ARCHIVE_APPEND or ARCHIVE_READ
+     * @param path segment holding the bill
+     * @param bytes length of the bill text
+     * @param orderId order of the bill
+     */
+    void commitArchivedBill(String operation, String path, long bytes, int orderId) {
+        this.operation = operation;
+        this.path = path;
+        this.bytes = bytes;
+        this.orders = 1;
+        this.orderId = orderId;
+        commit();
+    }
+}
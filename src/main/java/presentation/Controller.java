@@ -2,29 +2,53 @@ package presentation;
 
 import bll.*;
 import bll.MenuItem;
+import dao.AutosaveService;
+import dao.CommandLog;
+import dao.MetricsFile;
 import dao.RestaurantSerializator;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.awt.event.*;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+/**
+ * Controller class connects the buttons of the view to the restaurant.
+ * The fields of the view are read on the event dispatch thread; the changes to the restaurant, which wait
+ * for the command log, and the bills and saves, which write to disk, run on the TaskExecutor and report back
+ * to the event dispatch thread, so the window never waits for the disk.
+ */
 public class Controller {
 
     private final Restaurant restaurant;
     private final View view;
+    private final TaskExecutor tasks;
+    private final AutosaveService autosave;
 
     private int indexAdmin;
     private int indexWaiter;
 
     public Controller(Restaurant restaurant, View view) {
+        this(restaurant, view, null);
+    }
+
+    /**
+     * Controller constructor.
+     * @param restaurant restaurant shown in the view
+     * @param view window
+     * @param autosave autosave service stopped when the window is closed, may be null
+     */
+    public Controller(Restaurant restaurant, View view, AutosaveService autosave) {
         this.restaurant = restaurant;
         this.view = view;
+        this.autosave = autosave;
+        this.tasks = new TaskExecutor(view);
         indexAdmin = 0;
-        restaurant.addObserver(view);
+        restaurant.getEventBus().subscribe(view);
 
         this.view.addNextItemAdminListener(new NextItemAdminListener());
         this.view.addPrevItemAdminListener(new PrevItemAdminListener());
@@ -38,6 +62,7 @@ public class Controller {
         this.view.addDeleteOrderWaiterListener(new DeleteOrderListener());
         this.view.addComputePriceWaiterListener(new NewComputeOrderPriceListener());
         this.view.addGenerateBillWaiterListener(new NewGenerateBillListener());
+        this.view.addCloseShiftWaiterListener(new CloseShiftListener());
         this.view.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
@@ -46,14 +71,54 @@ public class Controller {
                         "Are you sure you want to close this window?", "Close Window?",
                         JOptionPane.YES_NO_OPTION,
                         JOptionPane.QUESTION_MESSAGE) == JOptionPane.YES_OPTION){
-                    RestaurantSerializator restaurantSerializator = new RestaurantSerializator(restaurant);
-                    restaurantSerializator.serialize();
-                    System.exit(0);
+                    tasks.command("Saving the restaurant...", () -> {
+                        new RestaurantSerializator(restaurant).writeSnapshot();
+                        try {
+                            MetricsFile.write(Metrics.snapshot(), MetricsFile.METRICS_FILE);
+                        } catch (IOException ex) {
+                            System.out.println("IOException is caught.");
+                        }
+                        return null;
+                    }, result -> exit(), exception -> {
+                        // with a command log every change is replayed at the next start, without one they are lost
+                        String consequence = restaurant.getJournal() != null
+                                ? "The changes are replayed from the command log at the next start."
+                                : "The changes since the last save are lost.";
+                        if (JOptionPane.showConfirmDialog(view,
+                                "The restaurant could not be saved: " + exception.getMessage()
+                                        + "\nClose anyway? " + consequence,
+                                "Save Failed", JOptionPane.YES_NO_OPTION,
+                                JOptionPane.ERROR_MESSAGE) == JOptionPane.YES_OPTION)
+                            exit();
+                    });
                 }
             }
         });
     }
 
+    /**
+     * Stop the kitchen and the autosave service and close the command log once the commands submitted before
+     * are applied, so the log is flushed, then exit.
+     */
+    private void exit() {
+        tasks.command(() -> {
+            Kitchen kitchen = restaurant.getKitchen();
+            if (kitchen != null)
+                kitchen.stop();
+            if (autosave != null)
+                autosave.close();
+            CommandLog journal = restaurant.getJournal();
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException ex) {
+                    System.out.println("IOException is caught.");
+                }
+            }
+            return null;
+        }, result -> System.exit(0));
+    }
+
     // ADMIN LISTENERS =================================================================================================
 
     class NextItemAdminListener implements ActionListener {
@@ -106,7 +171,10 @@ public class Controller {
         public void actionPerformed(ActionEvent e) {
             try {
                 MenuItem menuItem = parseMenuItem();
-                restaurant.createNewMenuItem(menuItem);
+                tasks.command(() -> {
+                    restaurant.createNewMenuItem(menuItem);
+                    return null;
+                }, null);
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
@@ -117,7 +185,11 @@ public class Controller {
         public void actionPerformed(ActionEvent e) {
             try {
                 MenuItem menuItem = parseMenuItem();
-                restaurant.editMenuItem(indexAdmin, menuItem);
+                int index = indexAdmin;
+                tasks.command(() -> {
+                    restaurant.editMenuItem(index, menuItem);
+                    return null;
+                }, null);
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
@@ -127,8 +199,11 @@ public class Controller {
     class DeleteMenuItemListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
             try {
-                restaurant.deleteMenuItem(indexAdmin);
-                view.setAdminView(restaurant.getMenuItem(indexAdmin));
+                int index = indexAdmin;
+                tasks.command(() -> {
+                    restaurant.deleteMenuItem(index);
+                    return restaurant.getMenuItem(index);
+                }, view::setAdminView);
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
@@ -175,7 +250,10 @@ public class Controller {
                         menuItems.add(menuItem);
                 }
                 order = new Order(view.getTextIdWaiter(), new Date(), view.getTextTableWaiter());
-                restaurant.createNewOrder(order, menuItems);
+                tasks.command(() -> {
+                    restaurant.createNewOrder(order, menuItems);
+                    return null;
+                }, null);
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
@@ -194,19 +272,43 @@ public class Controller {
                         menuItems.add(menuItem);
                 }
                 order = new Order(view.getTextIdWaiter(), new Date(), view.getTextTableWaiter());
-                restaurant.editOrder(indexWaiter, order, menuItems);
+                int index = indexWaiter;
+                tasks.command(() -> {
+                    restaurant.editOrder(index, order, menuItems);
+                    return null;
+                }, null);
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
         }
     }
 
+    /**
+     * Delete the order shown to the waiter if it has the id entered, otherwise the last order added with that id.
+     * Ids need not be unique, so the shown order is deleted by reference rather than looked up by id.
+     */
     class DeleteOrderListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
-            Order order;
             try {
-                order = new Order(view.getTextIdWaiter(), view.getTextDateWaiter(), view.getTextTableWaiter());
-                restaurant.deleteOrder(order);
+                int orderId = view.getTextIdWaiter();
+                int index = indexWaiter;
+                tasks.command(() -> {
+                    List<Order> withId = restaurant.getOrdersById(orderId);
+                    Order order = withId.isEmpty() ? null : withId.get(withId.size() - 1);
+                    try {
+                        Order shown = restaurant.getOrder(index);
+                        if (withId.contains(shown))
+                            order = shown;
+                    } catch (IndexOutOfBoundsException exception) {
+                        // no order is shown
+                    }
+                    if (order != null)
+                        restaurant.deleteOrder(order);
+                    return order != null;
+                }, deleted -> {
+                    if (!deleted)
+                        view.showError("There is no order with this id.");
+                });
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
@@ -216,7 +318,9 @@ public class Controller {
     class NewComputeOrderPriceListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
             try {
-                view.showMessage("Order cost is: " + restaurant.computeOrderPrice(restaurant.getOrder(indexWaiter)) + ".");
+                int index = indexWaiter;
+                tasks.command(() -> restaurant.computeOrderPrice(restaurant.getOrder(index)),
+                        price -> view.showMessage("Order cost is: " + Money.format(price) + "."));
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
@@ -226,14 +330,34 @@ public class Controller {
     class NewGenerateBillListener implements ActionListener {
         public void actionPerformed(ActionEvent e) {
             try {
-                restaurant.generateBill(restaurant.getOrder(indexWaiter), restaurant.getOrder(indexWaiter).getOrderId());
-                view.showMessage("Bill has been generated.");
+                Order order = restaurant.getOrder(indexWaiter);
+                tasks.io("Generating the bill...", () -> {
+                    restaurant.generateBill(order, order.getOrderId());
+                    return null;
+                }, result -> view.showMessage("Bill has been generated."),
+                        exception -> view.showError("The bill could not be generated: " + exception.getMessage()));
             } catch (Exception exception) {
                 System.out.println(exception.getMessage());
             }
         }
     }
 
+    /**
+     * Generates the bills of all orders at the end of a shift, one worker per processor.
+     */
+    class CloseShiftListener implements ActionListener {
+        public void actionPerformed(ActionEvent e) {
+            int workers = Runtime.getRuntime().availableProcessors();
+            tasks.io("Generating the bills of the shift...", () -> restaurant.generateBills(workers, null),
+                    report -> {
+                        if (report.getFailures() > 0)
+                            view.showError(report.getFailures() + " of the bills could not be generated.");
+                        else
+                            view.showMessage(report.getBills() + " bills have been generated.");
+                    });
+        }
+    }
+
 
 
 }
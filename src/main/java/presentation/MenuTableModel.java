@@ -0,0 +1,112 @@
+package presentation;
+
+import bll.MenuChangedEvent;
+import bll.MenuVersion;
+import bll.Money;
+import bll.Restaurant;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * MenuTableModel class shows the menu of a restaurant in a table without copying it.
+ * The rows are read from the version of the menu the table shows, with the prices of that version, so
+ * a painted row never mixes two versions. The version is replaced only on the event dispatch thread,
+ * as the change events of the menu arrive. A change fires the event of the affected row and of every
+ * composite it repriced, and a burst whose versions can not be told apart redraws the table.
+ */
+public class MenuTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Name", "Price"};
+
+    private final Restaurant restaurant;
+    private MenuVersion menu;
+
+    public MenuTableModel(Restaurant restaurant) {
+        this.restaurant = restaurant;
+        this.menu = restaurant.getMenu();
+    }
+
+    @Override
+    public int getRowCount() {
+        return menu.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    /**
+     * Read a cell from the version of the menu shown.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        return column == 0 ? menu.get(row).getName() : Money.format(menu.getPrice(row));
+    }
+
+    /**
+     * Apply a change of the menu to the rows.
+     * Each edit publishes the next version, so the event is applied row by row only if the current version
+     * follows the shown one and is the result of this event; otherwise the whole table is brought up to date
+     * and the later events of the burst find it so.
+     * @pre called on the event dispatch thread
+     * @param event change of the menu
+     */
+    public void menuChanged(MenuChangedEvent event) {
+        MenuVersion shown = menu;
+        MenuVersion current = restaurant.getMenu();
+        if (current.getVersion() <= shown.getVersion())
+            return;
+        menu = current;
+        int index = event.getIndex();
+        if (current.getVersion() != shown.getVersion() + 1 || !isEditOf(event, shown, current)) {
+            fireTableDataChanged();
+            return;
+        }
+        switch (event.getChange()) {
+            case MenuChangedEvent.CREATED:
+                fireTableRowsInserted(index, index);
+                break;
+            case MenuChangedEvent.DELETED:
+                fireTableRowsDeleted(index, index);
+                break;
+            default:
+                // the edit reprices the composites containing the item, wherever they are in the menu
+                for (int row = 0; row < current.size(); row++)
+                    if (row == index || current.getPrice(row) != shown.getPrice(row))
+                        fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Tell whether the event is the edit between two consecutive versions.
+     */
+    private static boolean isEditOf(MenuChangedEvent event, MenuVersion shown, MenuVersion current) {
+        int index = event.getIndex();
+        switch (event.getChange()) {
+            case MenuChangedEvent.CREATED:
+                return current.size() == shown.size() + 1 && current.get(index) == event.getMenuItem();
+            case MenuChangedEvent.DELETED:
+                return current.size() == shown.size() - 1 && shown.get(index) == event.getMenuItem();
+            default:
+                return current.size() == shown.size() && current.get(index) == event.getMenuItem();
+        }
+    }
+
+    /**
+     * Show the current version of the menu, after events that were applied out of order.
+     * @pre called on the event dispatch thread
+     */
+    public void refresh() {
+        MenuVersion current = restaurant.getMenu();
+        if (current.getVersion() != menu.getVersion()) {
+            menu = current;
+            fireTableDataChanged();
+        }
+    }
+}
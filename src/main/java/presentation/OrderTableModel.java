@@ -0,0 +1,111 @@
+package presentation;
+
+import bll.Order;
+import bll.OrderChangedEvent;
+import bll.OrderCreatedEvent;
+import bll.OrderDeletedEvent;
+import bll.Restaurant;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * OrderTableModel class shows the open orders of a restaurant in a table without copying them.
+ * Cells are read from the restaurant by position when they are painted, so a table of 100k orders
+ * costs no more to show or to update than a table of ten. The row count changes only on the event
+ * dispatch thread, as the order events arrive, and every change fires the event of one row.
+ */
+public class OrderTableModel extends AbstractTableModel {
+
+    private static final String[] COLUMNS = {"Id", "Date", "Table"};
+
+    private final Restaurant restaurant;
+    private int rows;
+
+    public OrderTableModel(Restaurant restaurant) {
+        this.restaurant = restaurant;
+        this.rows = restaurant.getOrderListSize();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    /**
+     * Read a cell from the orders.
+     * A row removed from the orders whose event has not arrived yet is shown empty until it does.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        Order order;
+        try {
+            order = restaurant.getOrder(row);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+        switch (column) {
+            case 0:
+                return order.getOrderId();
+            case 1:
+                return order.getDate();
+            default:
+                return order.getTable();
+        }
+    }
+
+    /**
+     * Add the row of a new order, which is always the last one.
+     * @pre called on the event dispatch thread
+     * @param event creation of the order
+     */
+    public void orderCreated(OrderCreatedEvent event) {
+        rows++;
+        fireTableRowsInserted(rows - 1, rows - 1);
+    }
+
+    /**
+     * Repaint the row of an edited order.
+     * @pre called on the event dispatch thread
+     * @param event edit of the order
+     */
+    public void orderChanged(OrderChangedEvent event) {
+        int position = restaurant.getOrderIndex(event.getOrder());
+        if (position >= 0 && position < rows)
+            fireTableRowsUpdated(position, position);
+    }
+
+    /**
+     * Remove the row of a deleted order.
+     * @pre called on the event dispatch thread
+     * @param event deletion of the order
+     */
+    public void orderDeleted(OrderDeletedEvent event) {
+        if (rows == 0)
+            return;
+        rows--;
+        int position = Math.min(event.getPosition(), rows);
+        fireTableRowsDeleted(position, position);
+    }
+
+    /**
+     * Bring the row count in line with the orders, after events that were applied out of order.
+     * @pre called on the event dispatch thread
+     */
+    public void refresh() {
+        int size = restaurant.getOrderListSize();
+        if (size != rows) {
+            rows = size;
+            fireTableDataChanged();
+        }
+    }
+}
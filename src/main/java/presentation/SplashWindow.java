@@ -0,0 +1,67 @@
+package presentation;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * SplashWindow class is shown at startup while the restaurant is loaded from disk,
+ * with a line telling which step of the loading is running.
+ * It may be updated from any thread.
+ */
+public class SplashWindow extends JWindow {
+
+    private final JLabel status;
+
+    private SplashWindow() {
+        JLabel title = new JLabel("Restaurant Management");
+        title.setFont(new java.awt.Font("SansSerif", 1, 16)); // NOI18N
+        status = new JLabel("Starting...");
+        status.setFont(new java.awt.Font("SansSerif", 0, 11)); // NOI18N
+        JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createEtchedBorder(),
+                BorderFactory.createEmptyBorder(16, 20, 16, 20)));
+        panel.add(title, BorderLayout.NORTH);
+        panel.add(status, BorderLayout.CENTER);
+        panel.add(bar, BorderLayout.SOUTH);
+        setContentPane(panel);
+        setSize(360, 120);
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Create and show a splash window on the event dispatch thread.
+     * @return splash window
+     */
+    public static SplashWindow open() {
+        SplashWindow[] splash = new SplashWindow[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                splash[0] = new SplashWindow();
+                splash[0].setVisible(true);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (java.lang.reflect.InvocationTargetException e) {
+            System.out.println(e.getCause().getMessage());
+        }
+        return splash[0];
+    }
+
+    /**
+     * Show the step of the loading that is running.
+     * @param text description of the step
+     */
+    public void setStatus(String text) {
+        SwingUtilities.invokeLater(() -> status.setText(text));
+    }
+
+    /**
+     * Close the splash window.
+     */
+    public void close() {
+        SwingUtilities.invokeLater(this::dispose);
+    }
+}
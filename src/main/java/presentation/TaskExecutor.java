@@ -0,0 +1,188 @@
+package presentation;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * TaskExecutor class runs the work started from the GUI away from the event dispatch thread
+ * and hands the results back to it, so the window keeps painting while the disk is busy.
+ * Commands, the changes to the restaurant and whatever must see them, run one at a time in the order
+ * they were submitted, so the clicks of a user are applied in order. Input and output, such as bills,
+ * run on a separate pool and do not hold up the commands.
+ * A task given a message shows it with a progress bar if it has not completed after PROGRESS_DELAY_MILLIS.
+ */
+public class TaskExecutor {
+
+    /**
+     * Time after which a task shows its progress, so quick tasks do not flash a dialog.
+     */
+    public static final int PROGRESS_DELAY_MILLIS = 300;
+
+    private final Component parent;
+    private final ExecutorService commands;
+    private final ExecutorService io;
+
+    /**
+     * TaskExecutor constructor.
+     * @param parent component the progress dialogs are centered on
+     */
+    public TaskExecutor(Component parent) {
+        this.parent = parent;
+        this.commands = Executors.newSingleThreadExecutor(r -> newThread(r, "gui-commands"));
+        this.io = Executors.newFixedThreadPool(2, r -> newThread(r, "gui-io"));
+    }
+
+    private static Thread newThread(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Run a command after the commands submitted before it.
+     * @pre called on the event dispatch thread
+     * @param task command
+     * @param onSuccess called on the event dispatch thread with the result, may be null
+     */
+    public <T> void command(Callable<T> task, Consumer<? super T> onSuccess) {
+        submit(commands, null, task, onSuccess, null);
+    }
+
+    /**
+     * Run a command after the commands submitted before it, showing its progress if it takes long.
+     * @pre called on the event dispatch thread
+     * @param message text shown while the command runs
+     * @param task command
+     * @param onSuccess called on the event dispatch thread with the result, may be null
+     */
+    public <T> void command(String message, Callable<T> task, Consumer<? super T> onSuccess) {
+        submit(commands, message, task, onSuccess, null);
+    }
+
+    /**
+     * Run a command after the commands submitted before it, showing its progress if it takes long,
+     * and report its failure instead of only printing it.
+     * @pre called on the event dispatch thread
+     * @param message text shown while the command runs
+     * @param task command
+     * @param onSuccess called on the event dispatch thread with the result, may be null
+     * @param onFailure called on the event dispatch thread with the exception thrown by the command, may be null
+     */
+    public <T> void command(String message, Callable<T> task, Consumer<? super T> onSuccess,
+                            Consumer<? super Exception> onFailure) {
+        submit(commands, message, task, onSuccess, onFailure);
+    }
+
+    /**
+     * Run an input or output task, showing its progress if it takes long.
+     * @pre called on the event dispatch thread
+     * @param message text shown while the task runs, null for none
+     * @param task task
+     * @param onSuccess called on the event dispatch thread with the result, may be null
+     */
+    public <T> void io(String message, Callable<T> task, Consumer<? super T> onSuccess) {
+        submit(io, message, task, onSuccess, null);
+    }
+
+    /**
+     * Run an input or output task, showing its progress if it takes long, and report its failure
+     * instead of only printing it.
+     * @pre called on the event dispatch thread
+     * @param message text shown while the task runs, null for none
+     * @param task task
+     * @param onSuccess called on the event dispatch thread with the result, may be null
+     * @param onFailure called on the event dispatch thread with the exception thrown by the task, may be null
+     */
+    public <T> void io(String message, Callable<T> task, Consumer<? super T> onSuccess,
+                       Consumer<? super Exception> onFailure) {
+        submit(io, message, task, onSuccess, onFailure);
+    }
+
+    private <T> void submit(ExecutorService executor, String message, Callable<T> task, Consumer<? super T> onSuccess,
+                            Consumer<? super Exception> onFailure) {
+        Progress progress = message == null ? null : new Progress(message);
+        executor.execute(() -> {
+            T result;
+            try {
+                result = task.call();
+            } catch (Exception exception) {
+                SwingUtilities.invokeLater(() -> {
+                    if (progress != null)
+                        progress.close();
+                    if (onFailure != null)
+                        onFailure.accept(exception);
+                    else
+                        System.out.println(exception.getMessage());
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (progress != null)
+                    progress.close();
+                if (onSuccess != null)
+                    onSuccess.accept(result);
+            });
+        });
+    }
+
+    /**
+     * Stop taking tasks and wait for the submitted ones to complete.
+     * @param timeoutMillis maximum time to wait for each kind of task
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeoutMillis) throws InterruptedException {
+        commands.shutdown();
+        io.shutdown();
+        commands.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        io.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Dialog with an indeterminate progress bar, shown only once the task has run for a while.
+     * Lives on the event dispatch thread.
+     */
+    private final class Progress {
+
+        private final Timer timer;
+        private JDialog dialog;
+        private boolean closed;
+
+        Progress(String message) {
+            timer = new Timer(PROGRESS_DELAY_MILLIS, e -> show(message));
+            timer.setRepeats(false);
+            timer.start();
+        }
+
+        private void show(String message) {
+            if (closed)
+                return;
+            JProgressBar bar = new JProgressBar();
+            bar.setIndeterminate(true);
+            JPanel panel = new JPanel(new BorderLayout(0, 8));
+            panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+            panel.add(new JLabel(message), BorderLayout.NORTH);
+            panel.add(bar, BorderLayout.CENTER);
+            Window owner = parent == null ? null : SwingUtilities.getWindowAncestor(parent);
+            if (parent instanceof Window)
+                owner = (Window) parent;
+            dialog = new JDialog(owner, "Please wait", Dialog.ModalityType.MODELESS);
+            dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+            dialog.setContentPane(panel);
+            dialog.pack();
+            dialog.setLocationRelativeTo(parent);
+            dialog.setVisible(true);
+        }
+
+        void close() {
+            closed = true;
+            timer.stop();
+            if (dialog != null)
+                dialog.dispose();
+        }
+    }
+}
@@ -1,26 +1,39 @@
 package presentation;
 
+import bll.MenuChangedEvent;
 import bll.MenuItem;
+import bll.Money;
 import bll.Order;
+import bll.OrderChangedEvent;
+import bll.OrderCreatedEvent;
+import bll.OrderDeletedEvent;
+import bll.OrderLines;
 import bll.Restaurant;
+import bll.RestaurantEvent;
+import bll.RestaurantListener;
 
 import javax.swing.*;
 import java.awt.event.ActionListener;
 import java.util.Date;
 import java.util.List;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
  *
  * @author Anghel Dan-Marian 30422
  */
-public class View extends javax.swing.JFrame implements Observer {
+public class View extends javax.swing.JFrame implements RestaurantListener {
 
     private final Restaurant restaurant;
+    private final MenuTableModel menuTableModel;
+    private final OrderTableModel orderTableModel;
+    /**
+     * Order shown in the fields of the waiter tab, refreshed when its lines are edited.
+     */
+    private Order waiterOrder;
 
     private javax.swing.JPanel administratorGUI;
     private javax.swing.JButton buttonBillWaiter;
+    private javax.swing.JButton buttonCloseShiftWaiter;
     private javax.swing.JButton buttonDeleteAdmin;
     private javax.swing.JButton buttonDeleteWaiter;
     private javax.swing.JButton buttonNewAdmin;
@@ -67,9 +80,13 @@ public class View extends javax.swing.JFrame implements Observer {
 
     public View(Restaurant restaurant) {
         this.restaurant = restaurant;
+        this.menuTableModel = new MenuTableModel(restaurant);
+        this.orderTableModel = new OrderTableModel(restaurant);
         initComponents();
-        setAdminView(restaurant.getMenuItem(0));
-        setWaiterView(restaurant.getOrder(0));
+        if (restaurant.getMenuItemListSize() > 0)
+            setAdminView(restaurant.getMenuItem(0));
+        if (restaurant.getOrderListSize() > 0)
+            setWaiterView(restaurant.getOrder(0));
     }
 
     private void initComponents() {
@@ -112,6 +129,7 @@ public class View extends javax.swing.JFrame implements Observer {
         panelButtonsWaiter = new javax.swing.JPanel();
         buttonNextWaiter = new javax.swing.JButton();
         buttonBillWaiter = new javax.swing.JButton();
+        buttonCloseShiftWaiter = new javax.swing.JButton();
         buttonPrevWaiter = new javax.swing.JButton();
         buttonNewWaiter = new javax.swing.JButton();
         buttonUpdateWaiter = new javax.swing.JButton();
@@ -263,17 +281,7 @@ public class View extends javax.swing.JFrame implements Observer {
         panelTableAdmin.setBorder(javax.swing.BorderFactory.createEtchedBorder());
 
         tableAdmin.setFont(new java.awt.Font("SansSerif", 0, 10)); // NOI18N
-        tableAdmin.setModel(new javax.swing.table.DefaultTableModel(
-                new Object [][] {
-                        {null, null},
-                        {null, null},
-                        {null, null},
-                        {null, null}
-                },
-                new String [] {
-                        "Name", "Price"
-                }
-        ));
+        tableAdmin.setModel(menuTableModel);
         jScrollPane1.setViewportView(tableAdmin);
 
         javax.swing.GroupLayout panelTableAdminLayout = new javax.swing.GroupLayout(panelTableAdmin);
@@ -453,6 +461,9 @@ public class View extends javax.swing.JFrame implements Observer {
         buttonBillWaiter.setFont(new java.awt.Font("SansSerif", 1, 12)); // NOI18N
         buttonBillWaiter.setText("Generate Bill");
 
+        buttonCloseShiftWaiter.setFont(new java.awt.Font("SansSerif", 1, 12)); // NOI18N
+        buttonCloseShiftWaiter.setText("Close Shift");
+
         buttonPrevWaiter.setFont(new java.awt.Font("SansSerif", 1, 12)); // NOI18N
         buttonPrevWaiter.setText("Previous");
 
@@ -477,7 +488,8 @@ public class View extends javax.swing.JFrame implements Observer {
                                 .addGap(18, 18, 18)
                                 .addGroup(panelButtonsWaiterLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                         .addComponent(buttonBillWaiter, javax.swing.GroupLayout.PREFERRED_SIZE, 141, javax.swing.GroupLayout.PREFERRED_SIZE)
-                                        .addComponent(buttonUpdateWaiter, javax.swing.GroupLayout.PREFERRED_SIZE, 141, javax.swing.GroupLayout.PREFERRED_SIZE))
+                                        .addComponent(buttonUpdateWaiter, javax.swing.GroupLayout.PREFERRED_SIZE, 141, javax.swing.GroupLayout.PREFERRED_SIZE)
+                                        .addComponent(buttonCloseShiftWaiter, javax.swing.GroupLayout.PREFERRED_SIZE, 141, javax.swing.GroupLayout.PREFERRED_SIZE))
                                 .addPreferredGap(javax.swing.LayoutStyle.ComponentPlacement.UNRELATED)
                                 .addGroup(panelButtonsWaiterLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
                                         .addComponent(buttonDeleteWaiter, javax.swing.GroupLayout.DEFAULT_SIZE, javax.swing.GroupLayout.DEFAULT_SIZE, Short.MAX_VALUE)
@@ -497,23 +509,15 @@ public class View extends javax.swing.JFrame implements Observer {
                                         .addComponent(buttonNewWaiter)
                                         .addComponent(buttonDeleteWaiter)
                                         .addComponent(buttonUpdateWaiter))
+                                .addGap(18, 18, 18)
+                                .addComponent(buttonCloseShiftWaiter)
                                 .addGap(0, 13, Short.MAX_VALUE))
         );
 
         panelOrderTableWaiter.setBorder(javax.swing.BorderFactory.createEtchedBorder());
 
         tableWaiter.setFont(new java.awt.Font("SansSerif", 0, 10)); // NOI18N
-        tableWaiter.setModel(new javax.swing.table.DefaultTableModel(
-                new Object [][] {
-                        {null, null, null},
-                        {null, null, null},
-                        {null, null, null},
-                        {null, null, null}
-                },
-                new String [] {
-                        "Id", "Date", "Table"
-                }
-        ));
+        tableWaiter.setModel(orderTableModel);
         jScrollPane2.setViewportView(tableWaiter);
 
         javax.swing.GroupLayout panelOrderTableWaiterLayout = new javax.swing.GroupLayout(panelOrderTableWaiter);
@@ -587,9 +591,50 @@ public class View extends javax.swing.JFrame implements Observer {
         pack();
     }
 
+    /**
+     * Apply a burst of events to the rows of the tables and notify the chef of the new orders in a single dialog.
+     * Each event inserts, deletes or repaints the rows it changed, a menu edit also the composites it repriced,
+     * so the work does not grow with the number of orders. An edit of the order shown in the waiter tab
+     * refreshes its fields. The dialog is not modal, so it does not hold up the waiters.
+     * @param events events of the burst
+     */
     @Override
-    public void update(Observable o, Object arg) {
-        JOptionPane.showMessageDialog(null, "New Order\n" + getTextItemsWaiter(), "Chef Notifier", JOptionPane.INFORMATION_MESSAGE);
+    public void onEvents(List<RestaurantEvent> events) {
+        StringBuilder newOrders = new StringBuilder();
+        for (RestaurantEvent event : events) {
+            if (event instanceof OrderCreatedEvent) {
+                Order order = ((OrderCreatedEvent) event).getOrder();
+                OrderLines orderLines = restaurant.getOrderLines(order);
+                if (orderLines == null)
+                    continue;
+                newOrders.append("\nOrder ").append(order.getOrderId()).append(", table ").append(order.getTable()).append(":");
+                orderLines.forEachUnit(m -> newOrders.append(" ").append(m.getName()));
+            }
+        }
+        SwingUtilities.invokeLater(() -> {
+            for (RestaurantEvent event : events) {
+                if (event instanceof OrderCreatedEvent)
+                    orderTableModel.orderCreated((OrderCreatedEvent) event);
+                else if (event instanceof OrderDeletedEvent)
+                    orderTableModel.orderDeleted((OrderDeletedEvent) event);
+                else if (event instanceof OrderChangedEvent) {
+                    Order order = ((OrderChangedEvent) event).getOrder();
+                    orderTableModel.orderChanged((OrderChangedEvent) event);
+                    if (order.equals(waiterOrder))
+                        setWaiterView(order);
+                }
+                else if (event instanceof MenuChangedEvent)
+                    menuTableModel.menuChanged((MenuChangedEvent) event);
+            }
+            setTableWaiter();
+            setTableAdmin();
+            if (newOrders.length() > 0) {
+                JDialog dialog = new JOptionPane("New Order" + newOrders, JOptionPane.INFORMATION_MESSAGE)
+                        .createDialog(this, "Chef Notifier");
+                dialog.setModal(false);
+                dialog.setVisible(true);
+            }
+        });
     }
 
     // GETTERS =========================================================================================================
@@ -610,8 +655,8 @@ public class View extends javax.swing.JFrame implements Observer {
         return textNameAdmin.getText();
     }
 
-    public double getTextPriceAdmin() {
-        return Double.parseDouble(textPriceAdmin.getText());
+    public long getTextPriceAdmin() {
+        return Money.parse(textPriceAdmin.getText());
     }
 
     public int getTextTableWaiter() {
@@ -683,53 +728,42 @@ public class View extends javax.swing.JFrame implements Observer {
         buttonBillWaiter.addActionListener(actionListener);
     }
 
+    public void addCloseShiftWaiterListener(ActionListener actionListener){
+        buttonCloseShiftWaiter.addActionListener(actionListener);
+    }
+
     // SETTERS =========================================================================================================
 
+    /**
+     * Make sure the admin table has one row per menu item. The rows themselves are read from the restaurant.
+     */
     public void setTableAdmin(){
-        List<MenuItem> menuItems = restaurant.getMenuItemList();
-        Object[][] objects = new Object[menuItems.size()][2];
-
-        int i = 0;
-        for (MenuItem m : menuItems){
-            objects[i][0] = m.getName();
-            objects[i][1] = m.getPrice();
-            i++;
-        }
-
-        tableAdmin.setModel(new javax.swing.table.DefaultTableModel(objects, new String [] {"Name", "Price"}));
+        menuTableModel.refresh();
     }
 
+    /**
+     * Make sure the waiter table has one row per order. The rows themselves are read from the restaurant.
+     */
     public void setTableWaiter(){
-        Object[][] objects = new Object[restaurant.getOrderListSize()][3];
-
-        int i = 0;
-        while (i < restaurant.getOrderListSize()){
-            Order order = restaurant.getOrder(i);
-            objects[i][0] = order.getOrderId();
-            objects[i][1] = order.getDate();
-            objects[i][2] = order.getTable();
-            i++;
-        }
-
-        tableWaiter.setModel(new javax.swing.table.DefaultTableModel(objects, new String [] {"Id", "Date", "Table"}));
+        orderTableModel.refresh();
     }
 
     public void setAdminView(MenuItem menuItem) {
         textNameAdmin.setText(menuItem.getName());
-        textPriceAdmin.setText(String.valueOf(menuItem.computePrice()));
+        textPriceAdmin.setText(Money.format(menuItem.computePrice()));
         textIngredientsAdmin.setText(menuItem.getIngredientList());
-        setTableAdmin();
     }
 
     public void setWaiterView(Order order){
+        waiterOrder = order;
         textIdWaiter.setText(Integer.toString(order.getOrderId()));
         textDateWaiter.setText(String.valueOf(order.getDate()));
         textTableWaiter.setText(Integer.toString(order.getTable()));
         StringBuilder itemsOrdered = new StringBuilder();
-        for(MenuItem m : restaurant.getMenuItemList(order))
-            itemsOrdered.append(m.getName()).append(", ");
+        OrderLines orderLines = restaurant.getOrderLines(order);
+        if (orderLines != null)
+            orderLines.forEachUnit(m -> itemsOrdered.append(m.getName()).append(", "));
         textItemsWaiter.setText(String.valueOf(itemsOrdered));
-        setTableWaiter();
     }
 
 
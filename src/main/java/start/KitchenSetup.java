@@ -0,0 +1,110 @@
+package start;
+
+import bll.Kitchen;
+import bll.KitchenTicket;
+import bll.MenuItem;
+import bll.Restaurant;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * KitchenSetup class builds the kitchen of the restaurant from the properties file Restaurant.kitchen:
+ * <pre>
+ * stations=grill, cold
+ * grill.cooks=2
+ * grill.items=Steak, Fries
+ * grill.prepareMillis=4000
+ * cold.items=Salad
+ * priority.Steak=5
+ * agingMillis=60000
+ * </pre>
+ * Items are matched by the name of the base menu items, the components of composite items included. The first
+ * station prepares the items no station lists. Without the file all items are prepared at one station.
+ * A cook spends prepareMillis on each ticket of the station and then announces it on the console.
+ */
+final class KitchenSetup {
+
+    /**
+     * File holding the stations of the kitchen.
+     */
+    static final String KITCHEN_FILE = "Restaurant.kitchen";
+
+    private static final String DEFAULT_STATION = "kitchen";
+
+    private KitchenSetup() {
+    }
+
+    /**
+     * Read the setup of the kitchen.
+     * @param filename name of the properties file
+     * @return setup, empty if there is no file
+     */
+    static Properties load(String filename) {
+        Properties setup = new Properties();
+        if (!Files.exists(Paths.get(filename)))
+            return setup;
+        try (InputStream in = new FileInputStream(filename)) {
+            setup.load(in);
+        } catch (IOException e) {
+            System.out.println("IOException is caught.");
+        }
+        return setup;
+    }
+
+    /**
+     * Build the kitchen of a restaurant. The kitchen is not started.
+     * @pre restaurant != null, setup != null
+     * @param restaurant restaurant whose orders the kitchen prepares
+     * @param setup setup read by load
+     * @return kitchen
+     */
+    static Kitchen create(Restaurant restaurant, Properties setup) {
+        assert (restaurant != null) && (setup != null);
+        Map<String, Integer> cooks = new LinkedHashMap<>();
+        Map<String, String> stationOfItem = new HashMap<>();
+        Map<String, Long> prepareNanos = new HashMap<>();
+        for (String station : split(setup.getProperty("stations", DEFAULT_STATION))) {
+            int stationCooks = Integer.parseInt(setup.getProperty(station + ".cooks",
+                    String.valueOf(Integer.getInteger("restaurant.cooks", 2))));
+            cooks.put(station, Math.max(1, stationCooks));
+            for (String item : split(setup.getProperty(station + ".items", "")))
+                stationOfItem.put(item, station);
+            prepareNanos.put(station, TimeUnit.MILLISECONDS.toNanos(
+                    Long.parseLong(setup.getProperty(station + ".prepareMillis", "0"))));
+        }
+        if (cooks.isEmpty())
+            cooks.put(DEFAULT_STATION, Integer.getInteger("restaurant.cooks", 2));
+        long agingMillis = Long.parseLong(setup.getProperty("agingMillis",
+                String.valueOf(Long.getLong("restaurant.kitchen.agingMillis", 60_000L))));
+
+        return new Kitchen(restaurant, cooks,
+                (MenuItem menuItem) -> stationOfItem.get(menuItem.getName()),
+                (MenuItem menuItem) -> Integer.parseInt(setup.getProperty("priority." + menuItem.getName(), "0")),
+                agingMillis, ticket -> prepare(ticket, prepareNanos.getOrDefault(ticket.getStation(), 0L)));
+    }
+
+    /**
+     * Work of a cook on a ticket: spend the time of the station on it and announce it.
+     */
+    private static void prepare(KitchenTicket ticket, long nanos) {
+        if (nanos > 0)
+            LockSupport.parkNanos(nanos);
+        System.out.println("Order " + ticket.getOrder().getOrderId() + ": " + ticket.getMenuItem().getName()
+                + " is ready at the " + ticket.getStation() + " station.");
+    }
+
+    private static String[] split(String list) {
+        String trimmed = list.trim();
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("\\s*,\\s*");
+    }
+}
@@ -0,0 +1,260 @@
+package start;
+
+import bll.*;
+import dao.BillArchive;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * LoadGenerator class drives a restaurant without the GUI, as a number of simulated waiters
+ * creating, pricing, billing and deleting orders against a synthetic menu with nested composites.
+ * Each operation is timed from the moment it was scheduled, so a stall also counts against the
+ * operations that should have started during it. Bills go to a temporary bill archive.
+ *
+ * Options, all optional:
+ *   --waiters N          number of concurrent waiters (8)
+ *   --rate R             operations per second of all waiters together, 0 for as fast as possible (0)
+ *   --duration S         seconds of measurement (30)
+ *   --warmup S           seconds run before measuring (5)
+ *   --mix C:P:B:D        weights of create, price, bill and delete (40:30:10:20)
+ *   --menu N             number of base menu items (200)
+ *   --depth N            levels of nested composites (3)
+ *   --seed N             seed of the synthetic menu (42)
+ */
+public class LoadGenerator {
+
+    private static final String[] OPERATIONS = {"create", "price", "bill", "delete"};
+    private static final int CREATE = 0;
+    private static final int PRICE = 1;
+    private static final int BILL = 2;
+    private static final int DELETE = 3;
+
+    private final IRestaurantProcessing restaurant;
+    private final List<MenuItem> menu;
+    private final int waiters;
+    private final double rate;
+    private final int[] cumulativeMix;
+    private final AtomicInteger nextOrderId;
+    private final Histogram[] latencies;
+    private final AtomicInteger failedWaiters;
+    private final AtomicReference<Throwable> firstFailure;
+    private volatile boolean measuring;
+
+    public LoadGenerator(IRestaurantProcessing restaurant, List<MenuItem> menu, int waiters, double rate, int[] mix) {
+        assert (restaurant != null) && !menu.isEmpty() && (waiters > 0) && (mix.length == OPERATIONS.length);
+        this.restaurant = restaurant;
+        this.menu = menu;
+        this.waiters = waiters;
+        this.rate = rate;
+        this.cumulativeMix = new int[mix.length];
+        for (int i = 0, sum = 0; i < mix.length; i++)
+            cumulativeMix[i] = sum += mix[i];
+        this.nextOrderId = new AtomicInteger();
+        this.latencies = new Histogram[OPERATIONS.length];
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new Histogram();
+        this.failedWaiters = new AtomicInteger();
+        this.firstFailure = new AtomicReference<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int waiters = Integer.parseInt(options.getOrDefault("waiters", "8"));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        String[] weights = options.getOrDefault("mix", "40:30:10:20").split(":");
+        int[] mix = new int[OPERATIONS.length];
+        for (int i = 0; i < mix.length; i++)
+            mix[i] = Integer.parseInt(weights[i]);
+        int menuSize = Integer.parseInt(options.getOrDefault("menu", "200"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "3"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        Restaurant restaurant = new Restaurant();
+        Path billDirectory = Files.createTempDirectory("restaurant-load");
+        BillArchive archive = BillArchive.open(billDirectory.resolve("bills").toString());
+        restaurant.setBillArchive(archive);
+        List<MenuItem> menu = buildMenu(restaurant, menuSize, depth, seed);
+
+        LoadGenerator generator = new LoadGenerator(restaurant, menu, waiters, rate, mix);
+        System.out.println("Menu of " + menu.size() + " items, " + waiters + " waiters, rate "
+                + (rate > 0 ? rate + " ops/s" : "unbounded") + ", mix " + options.getOrDefault("mix", "40:30:10:20"));
+        generator.run(TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(duration));
+        generator.report(System.out, duration);
+        System.out.println();
+        System.out.print(Metrics.snapshot().toCsv());
+
+        archive.close();
+        try (Stream<Path> files = Files.list(billDirectory)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        Files.deleteIfExists(billDirectory);
+        if (generator.getFailedWaiters() > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Build a menu with base items and levels of composites, each composite made of two to four
+     * items of the levels below, and add it to the restaurant.
+     * @param restaurant restaurant
+     * @param baseItems number of base items
+     * @param depth levels of composites
+     * @param seed seed of the random choices
+     * @return all items of the menu
+     */
+    public static List<MenuItem> buildMenu(IRestaurantProcessing restaurant, int baseItems, int depth, long seed) {
+        Random random = new Random(seed);
+        List<MenuItem> menu = new ArrayList<>();
+        for (int i = 0; i < baseItems; i++)
+            menu.add(new BaseMenuItem("Item " + i, 100 + random.nextInt(5000)));
+        for (int level = 1; level <= depth; level++) {
+            int below = menu.size();
+            for (int i = 0; i < baseItems / (2 * level); i++) {
+                List<MenuItem> items = new ArrayList<>();
+                for (int k = 2 + random.nextInt(3); k > 0; k--)
+                    items.add(menu.get(random.nextInt(below)));
+                menu.add(new CompositeMenuItem("Menu " + level + "." + i, items));
+            }
+        }
+        for (MenuItem m : menu)
+            restaurant.createNewMenuItem(m);
+        return menu;
+    }
+
+    /**
+     * Run the waiters for the warmup and then for the measured duration.
+     * A waiter that fails stops, is counted in getFailedWaiters() and reported, the others go on.
+     * @param warmupNanos time before measuring
+     * @param durationNanos time measured
+     * @throws InterruptedException if interrupted while waiting for the waiters
+     */
+    public void run(long warmupNanos, long durationNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        CountDownLatch done = new CountDownLatch(waiters);
+        for (int w = 0; w < waiters; w++) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    waiterLoop(start, end);
+                } catch (RuntimeException | Error e) {
+                    failedWaiters.incrementAndGet();
+                    firstFailure.compareAndSet(null, e);
+                    System.out.println(Thread.currentThread().getName() + " failed: " + e);
+                } finally {
+                    done.countDown();
+                }
+            }, "waiter-" + w);
+            waiter.setDaemon(true);
+            waiter.start();
+        }
+        LockSupport.parkNanos(Math.max(0, measureFrom - System.nanoTime()));
+        Metrics.reset();
+        measuring = true;
+        done.await();
+    }
+
+    private void waiterLoop(long start, long end) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Order> open = new ArrayList<>();
+        long interval = rate > 0 ? (long) (waiters * 1e9 / rate) : 0;
+        long scheduled = start + (interval > 0 ? random.nextLong(interval) : 0);
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= end)
+                return;
+            if (interval > 0) {
+                if (scheduled > now)
+                    LockSupport.parkNanos(scheduled - now);
+            } else
+                scheduled = now;
+            int operation = pick(random.nextInt(cumulativeMix[cumulativeMix.length - 1]));
+            if (operation != CREATE && open.isEmpty())
+                operation = CREATE;
+            switch (operation) {
+                case CREATE:
+                    Order order = new Order(nextOrderId.incrementAndGet(), System.currentTimeMillis(), 1 + random.nextInt(40));
+                    List<MenuItem> items = new ArrayList<>();
+                    for (int k = 1 + random.nextInt(6); k > 0; k--)
+                        items.add(menu.get(random.nextInt(menu.size())));
+                    restaurant.createNewOrder(order, items);
+                    open.add(order);
+                    break;
+                case PRICE:
+                    restaurant.computeOrderPrice(open.get(random.nextInt(open.size())));
+                    break;
+                case BILL:
+                    Order billed = open.get(random.nextInt(open.size()));
+                    restaurant.generateBill(billed, billed.getOrderId());
+                    break;
+                default:
+                    restaurant.deleteOrder(open.remove(random.nextInt(open.size())));
+            }
+            if (measuring)
+                latencies[operation].record(System.nanoTime() - scheduled);
+            scheduled += interval;
+        }
+    }
+
+    private int pick(int draw) {
+        int operation = 0;
+        while (draw >= cumulativeMix[operation])
+            operation++;
+        return operation;
+    }
+
+    /**
+     * Print the throughput and the latency percentiles of each operation.
+     * @param out stream to print to
+     * @param durationSeconds measured duration
+     */
+    public void report(PrintStream out, int durationSeconds) {
+        out.printf("%-8s %10s %10s %9s %9s %9s %9s %9s%n", "op", "count", "ops/s", "p50 us", "p90 us", "p99 us",
+                "p99.9 us", "max us");
+        long total = 0;
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            Histogram h = latencies[i];
+            total += h.getCount();
+            out.printf("%-8s %10d %10.0f %9.1f %9.1f %9.1f %9.1f %9.1f%n", OPERATIONS[i], h.getCount(),
+                    (double) h.getCount() / durationSeconds, h.getPercentile(0.5) / 1e3, h.getPercentile(0.9) / 1e3,
+                    h.getPercentile(0.99) / 1e3, h.getPercentile(0.999) / 1e3, h.getMax() / 1e3);
+        }
+        out.printf("%-8s %10d %10.0f%n", "total", total, (double) total / durationSeconds);
+        if (failedWaiters.get() > 0)
+            out.println(failedWaiters.get() + " of " + waiters + " waiters failed, the first with "
+                    + firstFailure.get());
+    }
+
+    /**
+     * Get the number of waiters that stopped on an exception.
+     * @return number of failed waiters
+     */
+    public int getFailedWaiters() {
+        return failedWaiters.get();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+}
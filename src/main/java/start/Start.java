@@ -1,23 +1,73 @@
 package start;
 
 import bll.*;
+import dao.AutosaveService;
+import dao.BillArchive;
+import dao.CommandLog;
 import dao.RestaurantSerializator;
 import presentation.Controller;
+import presentation.SplashWindow;
 import presentation.View;
 
+import javax.swing.*;
+import java.io.IOException;
+
 public class Start {
 
+    /**
+     * Show a splash window, load the restaurant on the main thread while it is shown,
+     * then build the window on the event dispatch thread.
+     */
     public static void main(String[] args) {
 
-        Restaurant restaurant = new Restaurant();
+        SplashWindow splash = SplashWindow.open();
+
+        splash.setStatus("Loading the restaurant...");
+        Restaurant loaded = new Restaurant();
+        RestaurantSerializator restaurantSerializator = new RestaurantSerializator(loaded);
+        try {
+            Restaurant restored = restaurantSerializator.deserialize();
+            if (restored != null)
+                loaded = restored;
+        } catch (IOException e) {
+            // starting empty would let the first save replace the restaurant that could not be read
+            splash.close();
+            String reason = e.getCause() == null ? e.getMessage() : e.getMessage() + ": " + e.getCause().getMessage();
+            JOptionPane.showMessageDialog(null, reason
+                            + "\nThe file is left as it is. Move it away to start with an empty restaurant.",
+                    "Load Failed", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+        Restaurant restaurant = loaded;
+
+        splash.setStatus("Replaying the command log...");
+        try {
+            CommandLog.open(restaurant, "Restaurant.wal");
+        } catch (IOException e) {
+            System.out.println("IOException is caught.");
+        }
+
+        splash.setStatus("Opening the bill archive...");
+        try {
+            restaurant.setBillArchive(BillArchive.open("Restaurant.bills"));
+        } catch (IOException e) {
+            System.out.println("IOException is caught.");
+        }
 
-        RestaurantSerializator restaurantSerializator = new RestaurantSerializator(restaurant);
-        restaurant = restaurantSerializator.deserialize("Restaurant.ser");
+        AutosaveService autosave = new AutosaveService(restaurant,
+                Integer.getInteger("restaurant.autosave.seconds", 30),
+                Integer.getInteger("restaurant.autosave.changes", 500));
+        autosave.start();
 
-        View view = new View(restaurant);
-        Controller controller = new Controller(restaurant, view);
+        Kitchen kitchen = KitchenSetup.create(restaurant, KitchenSetup.load(KitchenSetup.KITCHEN_FILE));
+        kitchen.start();
 
-        view.setVisible(true);
+        SwingUtilities.invokeLater(() -> {
+            View view = new View(restaurant);
+            new Controller(restaurant, view, autosave);
+            splash.close();
+            view.setVisible(true);
+        });
 
     }
 
@@ -0,0 +1,145 @@
+package bll;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Headless simulation of a kitchen at peak load. Every order holds a set menu of three steaks and fries, all
+ * prepared at the grill, and a salad prepared at the cold station. Steaks have a higher priority than fries,
+ * and the steaks alone arrive faster than the grill can prepare them, so without aging the fries would wait
+ * until the peak is over.
+ * The simulation runs in virtual time: the single cook of the grill advances the clock of the kitchen by the
+ * time of each ticket and places the orders due by then, so the order of the tickets and their waits are the
+ * same on every run, however the threads are scheduled.
+ */
+class KitchenSimulationTest {
+
+    private static final int STEAK_PRIORITY = 5;
+    private static final long AGING_MILLIS = 10;
+    private static final long PREPARE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final int BURSTS = 50;
+    private static final int ORDERS_PER_BURST = 4;
+    private static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final int TICKETS_PER_ORDER = 5;
+
+    @Test
+    void agingKeepsTheWaitOfLowPriorityTicketsBounded() {
+        Simulation aging = simulate(AGING_MILLIS);
+        Simulation strict = simulate(TimeUnit.HOURS.toMillis(1));
+
+        // every ticket is prepared, none is dropped at peak load
+        long tickets = (long) BURSTS * ORDERS_PER_BURST * TICKETS_PER_ORDER;
+        assertEquals(tickets, aging.kitchen.getCompletedCount());
+        assertEquals(tickets, strict.kitchen.getCompletedCount());
+
+        // fries wait at most the aging head start of the steaks longer than the steaks, plus the ticket in hand
+        long bound = aging.steakWaits.getMax() + STEAK_PRIORITY * TimeUnit.MILLISECONDS.toNanos(AGING_MILLIS)
+                + PREPARE_NANOS;
+        long friesP99 = aging.friesWaits.getPercentile(0.99);
+        assertTrue(friesP99 <= bound, "p99 wait of fries " + friesP99 + " ns above " + bound + " ns");
+
+        // without aging the fries starve behind the steaks for the whole peak
+        long strictFriesP99 = strict.friesWaits.getPercentile(0.99);
+        assertTrue(strictFriesP99 >= BURSTS * BURST_NANOS / 2,
+                "p99 wait of fries without aging " + strictFriesP99 + " ns");
+        assertTrue(friesP99 < strictFriesP99 * 3 / 4,
+                "p99 wait of fries " + friesP99 + " ns with aging, " + strictFriesP99 + " ns without");
+    }
+
+    private static Simulation simulate(long agingMillis) {
+        Restaurant restaurant = new Restaurant();
+        MenuItem steak = new BaseMenuItem("Steak", 3000);
+        MenuItem fries = new BaseMenuItem("Fries", 800);
+        MenuItem salad = new BaseMenuItem("Salad", 900);
+        MenuItem setMenu = new CompositeMenuItem("Set menu", Arrays.asList(steak, steak, steak, fries));
+        for (MenuItem menuItem : Arrays.asList(steak, fries, salad, setMenu))
+            restaurant.createNewMenuItem(menuItem);
+
+        Simulation simulation = new Simulation(restaurant, setMenu, salad);
+        Map<String, Integer> cooks = new LinkedHashMap<>();
+        cooks.put("grill", 1);
+        cooks.put("cold", 1);
+        CountDownLatch opened = new CountDownLatch(1);
+        simulation.kitchen = new Kitchen(restaurant, cooks,
+                menuItem -> menuItem == salad ? "cold" : "grill",
+                menuItem -> menuItem == steak ? STEAK_PRIORITY : 0,
+                agingMillis, ticket -> {
+                    if (!ticket.getStation().equals("grill"))
+                        return;
+                    awaitUninterruptibly(opened);
+                    long wait = simulation.clock.get() - ticket.getEnqueuedNanos();
+                    if (ticket.getMenuItem() == steak)
+                        simulation.steakWaits.record(wait);
+                    else
+                        simulation.friesWaits.record(wait);
+                    simulation.clock.addAndGet(PREPARE_NANOS);
+                    simulation.placeDueOrders();
+                }, simulation.clock::get);
+        simulation.kitchen.start();
+        try {
+            simulation.placeDueOrders();
+            opened.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            long tickets = (long) BURSTS * ORDERS_PER_BURST * TICKETS_PER_ORDER;
+            while (simulation.kitchen.getCompletedCount() < tickets && System.nanoTime() < deadline)
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        } finally {
+            simulation.kitchen.stop();
+        }
+        return simulation;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // the simulation opens the latch right after placing the first orders
+            }
+        }
+    }
+
+    private static final class Simulation {
+        private final AtomicLong clock = new AtomicLong();
+        private final Histogram steakWaits = new Histogram();
+        private final Histogram friesWaits = new Histogram();
+        private final Restaurant restaurant;
+        private final MenuItem setMenu;
+        private final MenuItem salad;
+        private int bursts;
+        private Kitchen kitchen;
+
+        Simulation(Restaurant restaurant, MenuItem setMenu, MenuItem salad) {
+            this.restaurant = restaurant;
+            this.setMenu = setMenu;
+            this.salad = salad;
+        }
+
+        /**
+         * Place the bursts of orders due by the virtual time. An idle grill would not advance the clock,
+         * so the next burst is placed at once when the grill has nothing left to prepare.
+         */
+        void placeDueOrders() {
+            if (bursts < BURSTS && kitchen.getQueueLengths().get("grill") == 0)
+                clock.set(Math.max(clock.get(), bursts * BURST_NANOS));
+            while (bursts < BURSTS && bursts * BURST_NANOS <= clock.get()) {
+                for (int i = 0; i < ORDERS_PER_BURST; i++) {
+                    int orderId = bursts * ORDERS_PER_BURST + i;
+                    restaurant.createNewOrder(new Order(orderId, orderId, i), Arrays.asList(setMenu, salad));
+                }
+                bursts++;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package bll;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OrderLinesTest {
+
+    @Test
+    void unitsAreListedOncePerQuantity() {
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        MenuItem bread = new BaseMenuItem("Bread", 100);
+        MenuItem wine = new BaseMenuItem("Wine", 900);
+        OrderLines lines = new OrderLines(new MenuItem[]{soup, bread, wine, soup},
+                new int[]{2, 0, 3, 1}, new long[]{500, 100, 900, 450});
+        List<MenuItem> expected = Arrays.asList(soup, soup, wine, wine, wine, soup);
+
+        assertEquals(6, lines.getUnitCount());
+        assertEquals(expected, lines.asMenuItemList());
+        List<MenuItem> units = new ArrayList<>();
+        lines.forEachUnit(units::add);
+        assertEquals(expected, units);
+        assertThrows(IndexOutOfBoundsException.class, () -> lines.asMenuItemList().get(6));
+    }
+}
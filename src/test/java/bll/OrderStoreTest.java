@@ -0,0 +1,144 @@
+package bll;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStoreTest {
+
+    @Test
+    void removeKeepsTheOrderTheOrdersWereAddedIn() throws IOException, ClassNotFoundException {
+        OrderStore store = new OrderStore();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        List<Order> expected = new ArrayList<>();
+        Random random = new Random(7);
+        int nextId = 0;
+        // mostly additions, then mostly removals, which compact the places of removed orders
+        for (int round = 0; round < 5000; round++) {
+            if (expected.isEmpty() || (round < 2500 ? random.nextInt(3) > 0 : random.nextInt(4) == 0)) {
+                Order order = new Order(nextId, nextId, nextId % 7);
+                nextId++;
+                store.add(order, Collections.singletonList(soup));
+                expected.add(order);
+            } else {
+                int position = random.nextInt(expected.size());
+                assertEquals(position, store.remove(expected.remove(position)));
+            }
+            if (round % 500 == 0)
+                assertSameOrders(expected, store);
+        }
+        assertSameOrders(expected, store);
+        assertEquals(-1, store.remove(new Order(-1, -1, -1)));
+        store.remove(expected.remove(0));
+
+        // places of removed orders are not read back
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(store);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            store = (OrderStore) in.readObject();
+        }
+        assertSameOrders(expected, store);
+
+        // lines follow the orders whose places were compacted
+        Order order = expected.get(expected.size() / 2);
+        store.add(order, Arrays.asList(soup, soup));
+        assertEquals(1000, store.getTotal(order));
+        assertEquals(1000, store.copyAllLines().get(expected.size() / 2).getTotal());
+        assertSameOrders(expected, store);
+    }
+
+    private static void assertSameOrders(List<Order> expected, OrderStore store) {
+        assertEquals(expected.size(), store.size());
+        assertEquals(expected, new ArrayList<>(store.asList()));
+        for (int position = 0; position < expected.size(); position++)
+            assertEquals(expected.get(position), store.get(position));
+        assertEquals(expected.size(), store.copyAllLines().size());
+    }
+
+    @Test
+    void ordersSharingAnIdAreFoundUntilTheLastIsRemoved() {
+        OrderStore store = new OrderStore();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        Order first = new Order(5, 1, 1);
+        Order second = new Order(5, 2, 2);
+        store.add(first, Collections.singletonList(soup));
+        store.add(second, Collections.singletonList(soup));
+        assertEquals(second, store.getById(5));
+        assertEquals(Arrays.asList(first, second), store.getAllById(5));
+
+        store.remove(second);
+        assertEquals(first, store.getById(5));
+        store.remove(first);
+        assertNull(store.getById(5));
+        assertTrue(store.getAllById(5).isEmpty());
+    }
+
+    @Test
+    void replacedItemFindsTheOrdersOfTheItemItReplaced() {
+        OrderStore store = new OrderStore();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        MenuItem newSoup = new BaseMenuItem("Soup", 600);
+        Order first = new Order(1, 1, 1);
+        Order second = new Order(2, 2, 1);
+        store.add(first, Collections.singletonList(soup));
+        store.add(second, Collections.singletonList(newSoup));
+
+        assertEquals(Arrays.asList(first, second), store.getContaining(newSoup));
+
+        // the order keeps its index entry while a line of the name is left
+        store.addLine(first, newSoup, 1);
+        assertTrue(store.removeLine(first, soup, 1));
+        assertEquals(Arrays.asList(first, second), store.getContaining(soup));
+        assertTrue(store.removeLine(first, newSoup, 1));
+        assertEquals(Collections.singletonList(second), store.getContaining(soup));
+    }
+
+    @Test
+    void itemsNoLineRefersToAreReleased() {
+        OrderStore store = new OrderStore();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        MenuItem bread = new BaseMenuItem("Bread", 100);
+        MenuItem wine = new BaseMenuItem("Wine", 900);
+        Order first = new Order(1, 1000, 1);
+        Order second = new Order(2, 2000, 2);
+        store.add(first, Arrays.asList(soup, bread));
+        store.add(second, Collections.singletonList(soup));
+        assertEquals(Arrays.asList(soup, bread), knownItems(store));
+
+        // soup stays while the second order refers to it
+        assertTrue(store.removeLine(first, soup, 1));
+        assertEquals(Arrays.asList(soup, bread), knownItems(store));
+        store.remove(second);
+        assertEquals(Collections.singletonList(bread), knownItems(store));
+
+        // a new item takes the id given back and the lines still read right
+        store.addLine(first, wine, 2);
+        assertEquals(Arrays.asList(wine, bread), knownItems(store));
+        assertEquals(1900, store.getTotal(first));
+        assertEquals(2, store.getQuantity(first, wine));
+        assertEquals(0, store.getQuantity(first, soup));
+        store.remove(first);
+        assertEquals(Collections.emptyList(), knownItems(store));
+    }
+
+    private static List<MenuItem> knownItems(OrderStore store) {
+        List<MenuItem> items = new ArrayList<>();
+        store.forEachItem(items::add);
+        return items;
+    }
+}
@@ -0,0 +1,238 @@
+package bll;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test of the locks of Restaurant: waiters create, edit and delete orders while an admin edits the menu
+ * and readers look at the menu and at the orders.
+ */
+class RestaurantConcurrencyTest {
+
+    private static final int WAITERS = 6;
+    private static final int ORDERS_PER_WAITER = 2000;
+    private static final int TABLES = 10;
+    private static final int BASE_ITEMS = 20;
+    private static final String SPECIAL = "Special ";
+    private static final int SAUCE = 1;
+
+    @Test
+    void concurrentOrdersAndMenuEditsLoseNothing() throws Exception {
+        Restaurant restaurant = new Restaurant();
+        List<MenuItem> baseItems = new ArrayList<>();
+        restaurant.createNewMenuItem(new BaseMenuItem(SPECIAL + 0, 500));
+        MenuItem sauce = new BaseMenuItem("Sauce", 50);
+        restaurant.createNewMenuItem(sauce);
+        for (int i = 0; i < BASE_ITEMS; i++) {
+            MenuItem menuItem = new BaseMenuItem("Item " + i, 100 + i);
+            baseItems.add(menuItem);
+            restaurant.createNewMenuItem(menuItem);
+        }
+        MenuItem plate = new CompositeMenuItem("Plate", Arrays.asList(sauce, baseItems.get(0)));
+        restaurant.createNewMenuItem(new CompositeMenuItem("Platter", Arrays.asList(plate, sauce)));
+        restaurant.createNewMenuItem(plate);
+
+        ExecutorService pool = Executors.newFixedThreadPool(WAITERS + 3);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        Map<Order, Long> expectedTotals = new ConcurrentHashMap<>();
+        try {
+            List<Future<?>> waiters = new ArrayList<>();
+            for (int w = 0; w < WAITERS; w++) {
+                int waiter = w;
+                waiters.add(pool.submit(() -> {
+                    start.await();
+                    waiterLoop(restaurant, baseItems, waiter, expectedTotals);
+                    return null;
+                }));
+            }
+            Future<?> admin = pool.submit(() -> {
+                start.await();
+                adminLoop(restaurant, running);
+                return null;
+            });
+            Future<?> menuReader = pool.submit(() -> {
+                start.await();
+                while (running.get())
+                    checkMenu(restaurant.getMenu(), failure);
+                return null;
+            });
+            Future<?> orderReader = pool.submit(() -> {
+                start.await();
+                while (running.get())
+                    checkOrders(restaurant, failure);
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> waiter : waiters)
+                waiter.get(60, TimeUnit.SECONDS);
+            running.set(false);
+            admin.get(10, TimeUnit.SECONDS);
+            menuReader.get(10, TimeUnit.SECONDS);
+            orderReader.get(10, TimeUnit.SECONDS);
+        } finally {
+            running.set(false);
+            pool.shutdownNow();
+        }
+
+        assertNull(failure.get());
+
+        // no order is lost and no deleted order comes back
+        Set<Order> kept = new HashSet<>(restaurant.getOrders());
+        assertEquals(expectedTotals.keySet(), kept);
+        assertEquals(expectedTotals.size(), restaurant.getOrderListSize());
+
+        // the running totals of the orders and of the tables match the lines
+        Map<Integer, Long> tableTotals = new HashMap<>();
+        for (Map.Entry<Order, Long> entry : expectedTotals.entrySet()) {
+            Order order = entry.getKey();
+            assertEquals((long) entry.getValue(), restaurant.computeOrderPrice(order));
+            assertEquals((long) entry.getValue(), sumOfLines(restaurant.getOrderLines(order)));
+            tableTotals.merge(order.getTable(), entry.getValue(), Long::sum);
+        }
+        for (int t = 0; t < TABLES; t++) {
+            int table = t;
+            assertEquals((long) tableTotals.getOrDefault(table, 0L), restaurant.getTableTotal(table));
+            assertEquals(new HashSet<>(restaurant.getOrdersAtTable(table)),
+                    kept.stream().filter(o -> o.getTable() == table).collect(Collectors.toSet()));
+        }
+
+        checkMenu(restaurant.getMenu(), failure);
+        assertNull(failure.get());
+        assertEquals(BASE_ITEMS + 4, restaurant.getMenuItemListSize());
+    }
+
+    /**
+     * Create orders of three items, edit every third one to add two units and remove one, delete every fourth.
+     */
+    private static void waiterLoop(Restaurant restaurant, List<MenuItem> baseItems, int waiter,
+                                   Map<Order, Long> expectedTotals) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < ORDERS_PER_WAITER; i++) {
+            Order order = new Order(waiter * ORDERS_PER_WAITER + i, System.currentTimeMillis(), i % TABLES);
+            List<MenuItem> items = new ArrayList<>();
+            long total = 0;
+            for (int k = 0; k < 3; k++) {
+                MenuItem menuItem = baseItems.get(random.nextInt(baseItems.size()));
+                items.add(menuItem);
+                total += menuItem.getPrice();
+            }
+            restaurant.createNewOrder(order, items);
+
+            if (i % 3 == 0) {
+                MenuItem added = baseItems.get(random.nextInt(baseItems.size()));
+                OrderDelta delta = new OrderDelta().addLine(added, 2).removeLine(items.get(0), 1);
+                assertTrue(restaurant.editOrder(order, delta));
+                total += 2 * added.getPrice() - items.get(0).getPrice();
+            }
+            if (i % 4 == 0)
+                restaurant.deleteOrder(order);
+            else
+                expectedTotals.put(order, total);
+        }
+    }
+
+    /**
+     * Rename the special item over and over, reprice the sauce of the composites, and add and delete a temporary
+     * item, so every menu version a reader sees has exactly one special, prices its composites as the sum of
+     * their parts and agrees with its index.
+     */
+    private static void adminLoop(Restaurant restaurant, AtomicBoolean running) {
+        int edits = 0;
+        while (running.get()) {
+            edits++;
+            restaurant.editMenuItem(0, new BaseMenuItem(SPECIAL + edits, 500 + edits));
+            restaurant.editMenuItem(SAUCE, new BaseMenuItem("Sauce", 50 + edits));
+            restaurant.createNewMenuItem(new BaseMenuItem("Temporary " + edits, 1));
+            restaurant.deleteMenuItem(restaurant.getMenuItemListSize() - 1);
+        }
+    }
+
+    private static void checkMenu(MenuVersion menu, AtomicReference<String> failure) {
+        List<MenuItem> items = menu.getItems();
+        if (items.size() != menu.size())
+            failure.compareAndSet(null, "menu version " + menu.getVersion() + " has an inconsistent size");
+        int specials = 0;
+        Map<MenuItem, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < items.size(); i++)
+            positions.put(items.get(i), i);
+        for (int i = 0; i < items.size(); i++) {
+            MenuItem menuItem = items.get(i);
+            if (menuItem.getName().startsWith(SPECIAL))
+                specials++;
+            if (menu.get(i) != menuItem || menu.get(menuItem.getName()) != menuItem)
+                failure.compareAndSet(null, "menu version " + menu.getVersion() + " does not index "
+                        + menuItem.getName());
+        }
+        if (specials != 1)
+            failure.compareAndSet(null, "menu version " + menu.getVersion() + " has " + specials + " specials");
+
+        // composites are repriced in place, the version keeps the prices it was built with
+        long sauce = priceOf(menu, positions, "Sauce");
+        long plate = priceOf(menu, positions, "Plate");
+        long platter = priceOf(menu, positions, "Platter");
+        if (plate != sauce + 100 || platter != plate + sauce)
+            failure.compareAndSet(null, "menu version " + menu.getVersion() + " prices sauce " + sauce
+                    + ", plate " + plate + " and platter " + platter);
+    }
+
+    private static long priceOf(MenuVersion menu, Map<MenuItem, Integer> positions, String name) {
+        return menu.getPrice(positions.get(menu.get(name)));
+    }
+
+    /**
+     * An order has three units before an edit and four after it, anything else is a half applied edit.
+     */
+    private static void checkOrders(Restaurant restaurant, AtomicReference<String> failure) {
+        int size = restaurant.getOrderListSize();
+        if (size == 0)
+            return;
+        Order order;
+        try {
+            order = restaurant.getOrder(ThreadLocalRandom.current().nextInt(size));
+        } catch (IndexOutOfBoundsException e) {
+            return;
+        }
+        OrderLines orderLines = restaurant.getOrderLines(order);
+        if (orderLines == null)
+            return;
+        int units = 0;
+        for (int i = 0; i < orderLines.size(); i++)
+            units += orderLines.getQuantity(i);
+        if (units != 3 && units != 4)
+            failure.compareAndSet(null, "order " + order.getOrderId() + " has " + units + " units");
+        if (sumOfLines(orderLines) != orderLines.getTotal())
+            failure.compareAndSet(null, "order " + order.getOrderId() + " total does not match its lines");
+    }
+
+    private static long sumOfLines(OrderLines orderLines) {
+        long sum = 0;
+        for (int i = 0; i < orderLines.size(); i++)
+            sum += orderLines.getPrice(i) * orderLines.getQuantity(i);
+        return sum;
+    }
+}
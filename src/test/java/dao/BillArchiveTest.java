@@ -0,0 +1,108 @@
+package dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the bill archive: reads of a growing segment and recovery after a crash.
+ */
+class BillArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBillsWhileTheSegmentGrows() throws IOException {
+        String baseName = directory.resolve("bills").toString();
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            for (int id = 0; id < 3000; id++) {
+                archive.append(id, bill(id, 1000));
+                assertEquals(text(id, 1000), archive.read(id));
+                assertEquals(text(id / 2, 1000), archive.read(id / 2));
+            }
+        }
+    }
+
+    @Test
+    void dropsIndexEntriesOfLostRecords() throws IOException {
+        String baseName = directory.resolve("bills").toString();
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            for (int id = 1; id <= 3; id++)
+                archive.append(id, bill(id, 100));
+        }
+        // the crash lost the end of the last bill but not its index entry
+        Path segment = Path.of(baseName + ".0");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 50);
+        }
+
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            assertEquals(2, archive.size());
+            assertEquals(text(2, 100), archive.read(2));
+            assertFalse(archive.contains(3));
+            assertNull(archive.read(3));
+            assertEquals(2 * 16, Files.size(Path.of(baseName + ".idx")));
+
+            archive.append(4, bill(4, 100));
+            assertEquals(text(4, 100), archive.read(4));
+        }
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            assertEquals(3, archive.size());
+            assertEquals(text(4, 100), archive.read(4));
+        }
+    }
+
+    @Test
+    void indexesEverySegmentWithoutIndexEntries() throws IOException {
+        String baseName = directory.resolve("bills").toString();
+        String otherName = directory.resolve("other").toString();
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            for (int id = 1; id <= 3; id++)
+                archive.append(id, bill(id, 100));
+        }
+        try (BillArchive other = BillArchive.open(otherName)) {
+            other.append(2, bill(20, 100));
+            other.append(5, bill(5, 100));
+        }
+        // a second segment whose index entries were lost
+        Files.move(Path.of(otherName + ".0"), Path.of(baseName + ".1"));
+
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            assertEquals(4, archive.size());
+            assertEquals(text(1, 100), archive.read(1));
+            assertEquals(text(20, 100), archive.read(2));
+            assertEquals(text(5, 100), archive.read(5));
+        }
+
+        // without any index entry both segments are indexed again and the newest bill still wins
+        Files.delete(Path.of(baseName + ".idx"));
+        try (BillArchive archive = BillArchive.open(baseName)) {
+            assertEquals(4, archive.size());
+            assertEquals(text(20, 100), archive.read(2));
+            assertEquals(text(3, 100), archive.read(3));
+        }
+    }
+
+    private static ByteBuffer bill(int id, int length) {
+        return ByteBuffer.wrap(text(id, length).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(int id, int length) {
+        StringBuilder text = new StringBuilder("Bill ").append(id).append('\n');
+        while (text.length() < length)
+            text.append('.');
+        return text.toString();
+    }
+}
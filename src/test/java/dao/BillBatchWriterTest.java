@@ -0,0 +1,73 @@
+package dao;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.MenuItem;
+import bll.Order;
+import bll.Restaurant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of billing through the restaurant: a bill of the batch must be the same text as the single bill
+ * of its order, and a bill that can not be stored must not pass for generated.
+ */
+class BillBatchWriterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void batchBillsMatchSingleBills() throws IOException {
+        Restaurant restaurant = new Restaurant();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        MenuItem bread = new BaseMenuItem("Bread", 125);
+        restaurant.createNewMenuItem(soup);
+        restaurant.createNewMenuItem(bread);
+        restaurant.createNewMenuItem(new CompositeMenuItem("Lunch", Arrays.asList(soup, bread)));
+        Order first = new Order(1, 1000, 3);
+        Order second = new Order(2, 2000, 4);
+        restaurant.createNewOrder(first, Arrays.asList(soup, bread, soup, restaurant.getMenuItem("Lunch")));
+        restaurant.createNewOrder(second, Arrays.asList(bread, bread));
+
+        try (BillArchive single = BillArchive.open(directory.resolve("single").toString());
+             BillArchive batch = BillArchive.open(directory.resolve("batch").toString())) {
+            restaurant.setBillArchive(single);
+            for (Order order : restaurant.getOrders())
+                restaurant.generateBill(order, order.getOrderId());
+            restaurant.setBillArchive(batch);
+            BillingReport report = restaurant.generateBills(2, null);
+
+            assertEquals(2, report.getBills());
+            assertEquals(0, report.getFailures());
+            for (Order order : restaurant.getOrders())
+                assertEquals(single.read(order.getOrderId()), batch.read(order.getOrderId()));
+            // units of an item are listed together, prices have two decimals
+            assertTrue(batch.read(1).endsWith("\nSoup 5.00\nSoup 5.00\nBread 1.25\nLunch 6.25\nTotal cost: 17.50"),
+                    batch.read(1));
+        }
+    }
+
+    @Test
+    void singleBillReportsAnArchiveFailure() throws IOException {
+        Restaurant restaurant = new Restaurant();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        restaurant.createNewMenuItem(soup);
+        Order order = new Order(1, 1000, 3);
+        restaurant.createNewOrder(order, Arrays.asList(soup, soup));
+        BillArchive archive = BillArchive.open(directory.resolve("bills").toString());
+        archive.close();
+        restaurant.setBillArchive(archive);
+
+        assertThrows(UncheckedIOException.class, () -> restaurant.generateBill(order, order.getOrderId()));
+    }
+}
@@ -0,0 +1,114 @@
+package dao;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.MenuItem;
+import bll.Order;
+import bll.OrderDelta;
+import bll.OrderLines;
+import bll.Restaurant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of replaying the command log: a restaurant rebuilt from its log must equal the restaurant that wrote it.
+ */
+class CommandLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysAnEditOfLinesWhoseItemLeftTheMenu() throws IOException {
+        Restaurant live = new Restaurant();
+        CommandLog log = CommandLog.open(live, logName());
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        live.createNewMenuItem(soup);
+        Order order = new Order(1, 1000, 3);
+        live.createNewOrder(order, Arrays.asList(soup, soup));
+        MenuItem newSoup = new BaseMenuItem("Soup", 700);
+        live.editMenuItem(0, newSoup);
+        live.editOrder(0, order, Collections.singletonList(newSoup));
+        log.close();
+        assertEquals(700, live.computeOrderPrice(order));
+
+        assertSameState(live, replay());
+    }
+
+    @Test
+    void replaysEveryKindOfRecord() throws IOException {
+        Restaurant live = new Restaurant();
+        CommandLog log = CommandLog.open(live, logName());
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        MenuItem bread = new BaseMenuItem("Bread", 100);
+        live.createNewMenuItem(soup);
+        live.createNewMenuItem(bread);
+        live.createNewMenuItem(new CompositeMenuItem("Lunch", Arrays.asList(soup, bread)));
+        Order first = new Order(1, 1000, 3);
+        Order second = new Order(2, 2000, 3);
+        Order third = new Order(3, 3000, 4);
+        live.createNewOrder(first, Arrays.asList(soup, soup, live.getMenuItem("Lunch")));
+        live.createNewOrder(second, Arrays.asList(bread, soup));
+
+        // soup and lunch leave the menu while orders still hold them
+        live.editMenuItem(0, new BaseMenuItem("Soup", 650));
+        live.deleteMenuItem(2);
+        live.createNewOrder(third, Arrays.asList(soup, soup, bread));
+        live.addOrderLine(first, soup);
+        live.addOrderLine(first, live.getMenuItem("Soup"));
+        assertTrue(live.removeOrderLine(first, soup));
+        assertTrue(live.removeOrderLine(second, soup));
+        live.editOrder(0, first, Arrays.asList(soup, live.getMenuItem("Soup"), bread));
+        live.editOrder(third, new OrderDelta().removeLine(soup, 1).changeQuantity(bread, 3));
+        live.deleteOrder(second);
+        log.close();
+
+        assertSameState(live, replay());
+    }
+
+    private String logName() {
+        return directory.resolve("Restaurant.wal").toString();
+    }
+
+    private Restaurant replay() throws IOException {
+        Restaurant replayed = new Restaurant();
+        CommandLog.open(replayed, logName()).close();
+        return replayed;
+    }
+
+    static void assertSameState(Restaurant expected, Restaurant actual) {
+        assertEquals(names(expected.getMenuItemList()), names(actual.getMenuItemList()));
+        assertEquals(expected.getOrders(), actual.getOrders());
+        for (Order order : expected.getOrders()) {
+            assertEquals(lines(expected.getOrderLines(order)), lines(actual.getOrderLines(order)),
+                    "lines of " + order.getOrderId());
+            assertEquals(expected.computeOrderPrice(order), actual.computeOrderPrice(order));
+            assertEquals(expected.getTableTotal(order.getTable()), actual.getTableTotal(order.getTable()));
+        }
+    }
+
+    private static List<String> names(List<MenuItem> menuItems) {
+        List<String> names = new ArrayList<>();
+        for (MenuItem menuItem : menuItems)
+            names.add(menuItem.getName() + " " + menuItem.computePrice());
+        return names;
+    }
+
+    private static List<String> lines(OrderLines orderLines) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < orderLines.size(); i++)
+            lines.add(orderLines.getMenuItem(i).getName() + " x" + orderLines.getQuantity(i)
+                    + " at " + orderLines.getPrice(i));
+        return lines;
+    }
+}
@@ -0,0 +1,66 @@
+package dao;
+
+import bll.MenuItem;
+import bll.Order;
+import bll.Restaurant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of loading the restaurant from a Restaurant.ser written by the version before the order store.
+ */
+class RestaurantSerializatorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsTheOldSerializedFormAndLeavesTheFile() throws IOException {
+        Path file = copyBaseline();
+        byte[] before = Files.readAllBytes(file);
+
+        Restaurant restaurant = new RestaurantSerializator(new Restaurant()).deserialize(file.toString());
+
+        assertEquals(8, restaurant.getMenuItemListSize());
+        assertEquals(200, restaurant.getMenuItem("Peanuts").computePrice());
+        MenuItem salad = restaurant.getMenuItem("Salad");
+        assertEquals(550, salad.computePrice());
+        assertEquals("Tomato, Cucumber, Pepper, ", salad.getIngredientList());
+        assertEquals(6, restaurant.getOrderListSize());
+        Order order = restaurant.getOrder(1);
+        assertEquals(2, order.getOrderId());
+        assertEquals(3, order.getTable());
+        assertEquals(550, restaurant.computeOrderPrice(order));
+        assertArrayEquals(before, Files.readAllBytes(file));
+    }
+
+    @Test
+    void damagedFileIsReportedInsteadOfEmpty() throws IOException {
+        Path file = copyBaseline();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+        IOException failure = assertThrows(IOException.class,
+                () -> new RestaurantSerializator(new Restaurant()).deserialize(file.toString()));
+        assertTrue(failure.getMessage().contains(file.toString()));
+    }
+
+    private Path copyBaseline() throws IOException {
+        Path file = directory.resolve("Restaurant.ser");
+        try (InputStream in = getClass().getResourceAsStream("baseline-Restaurant.ser")) {
+            Files.copy(in, file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,88 @@
+package dao;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.MenuItem;
+import bll.Order;
+import bll.Restaurant;
+import bll.RestaurantSnapshot;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of reading snapshot files.
+ */
+class SnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackTheOrders() throws IOException {
+        String filename = directory.resolve("Restaurant.snap").toString();
+        SnapshotFile.write(restaurant(1000).snapshot(), filename);
+
+        Restaurant restaurant = SnapshotFile.read(filename, ForkJoinPool.commonPool());
+        assertEquals(1000, restaurant.getOrderListSize());
+        assertEquals(2 * 150 + 250, restaurant.computeOrderPrice(restaurant.getOrderById(999)));
+    }
+
+    @Test
+    void namesTheSnapshotOfADamagedOrderSegment() throws IOException {
+        String filename = directory.resolve("Restaurant.snap").toString();
+        SnapshotFile.write(restaurant(1000).snapshot(), filename);
+        try (FileChannel channel = FileChannel.open(Path.of(filename), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x55}), channel.size() - 10);
+        }
+
+        IOException exception = assertThrows(IOException.class,
+                () -> SnapshotFile.read(filename, ForkJoinPool.commonPool()));
+        assertTrue(exception.getMessage().contains(filename), exception.getMessage());
+    }
+
+    @Test
+    void writesTheCompositesAsTheyWereWhenTheSnapshotWasTaken() throws IOException {
+        String filename = directory.resolve("Restaurant.snap").toString();
+        Restaurant restaurant = restaurant(1);
+        MenuItem lunch = new CompositeMenuItem("Lunch", Arrays.asList(restaurant.getMenuItem("Soup"),
+                restaurant.getMenuItem("Steak")));
+        restaurant.createNewMenuItem(lunch);
+        restaurant.createNewOrder(new Order(1, 1_600_000_000_001L, 2), Arrays.asList(lunch, lunch));
+        RestaurantSnapshot snapshot = restaurant.snapshot();
+        // replaces the soup inside the lunch after the snapshot was taken
+        restaurant.editMenuItem(0, new BaseMenuItem("Broth", 120));
+        SnapshotFile.write(snapshot, filename);
+
+        Restaurant read = SnapshotFile.read(filename, ForkJoinPool.commonPool());
+        CompositeMenuItem readLunch = (CompositeMenuItem) read.getMenuItem("Lunch");
+        assertEquals("Soup", readLunch.getItems().get(0).getName());
+        assertEquals(400, readLunch.computePrice());
+        assertEquals(800, read.computeOrderPrice(read.getOrderById(1)));
+        assertEquals(Arrays.asList("Soup", "Steak", "Lunch"), Arrays.asList(read.getMenuItem(0).getName(),
+                read.getMenuItem(1).getName(), read.getMenuItem(2).getName()));
+    }
+
+    private static Restaurant restaurant(int orderCount) {
+        Restaurant restaurant = new Restaurant();
+        MenuItem soup = new BaseMenuItem("Soup", 150);
+        MenuItem steak = new BaseMenuItem("Steak", 250);
+        restaurant.createNewMenuItem(soup);
+        restaurant.createNewMenuItem(steak);
+        for (int i = 0; i < orderCount; i++)
+            restaurant.createNewOrder(new Order(i, 1_600_000_000_000L + i, i % 10), Arrays.asList(soup, steak, soup));
+        return restaurant;
+    }
+}
@@ -0,0 +1,49 @@
+package presentation;
+
+import bll.BaseMenuItem;
+import bll.CompositeMenuItem;
+import bll.MenuChangedEvent;
+import bll.MenuItem;
+import bll.Restaurant;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the menu table: the rows show the prices of the published menu and an edit repaints the composites
+ * it repriced.
+ */
+class MenuTableModelTest {
+
+    @Test
+    void editRepaintsTheRepricedComposites() {
+        Restaurant restaurant = new Restaurant();
+        MenuItem soup = new BaseMenuItem("Soup", 500);
+        MenuItem bread = new BaseMenuItem("Bread", 100);
+        restaurant.createNewMenuItem(new CompositeMenuItem("Lunch", Arrays.asList(soup, bread)));
+        restaurant.createNewMenuItem(soup);
+        restaurant.createNewMenuItem(bread);
+        restaurant.createNewMenuItem(new BaseMenuItem("Wine", 900));
+        MenuTableModel model = new MenuTableModel(restaurant);
+        List<Integer> repainted = new ArrayList<>();
+        model.addTableModelListener(e -> {
+            assertEquals(TableModelEvent.UPDATE, e.getType());
+            for (int row = e.getFirstRow(); row <= e.getLastRow(); row++)
+                repainted.add(row);
+        });
+
+        MenuItem newSoup = new BaseMenuItem("Soup", 700);
+        restaurant.editMenuItem(1, newSoup);
+        model.menuChanged(new MenuChangedEvent(newSoup, MenuChangedEvent.EDITED, 1));
+
+        assertEquals(Arrays.asList(0, 1), repainted);
+        assertEquals("8.00", model.getValueAt(0, 1));
+        assertEquals("7.00", model.getValueAt(1, 1));
+        assertEquals("1.00", model.getValueAt(2, 1));
+    }
+}